@@ -0,0 +1,58 @@
+package lox;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Deep trees are walked recursively.
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class AstPrinterBenchmark {
+    @Param({"wide", "nested", "strings", "keywords"})
+    public String shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private Expr expr;
+    private CompactAst ast;
+
+    @Setup
+    public void setUp() {
+        expr = Benchmarks.parse(Corpus.generate(shape, size));
+        ast = CompactAst.of(expr);
+    }
+
+    @Benchmark
+    public String print() {
+        return new AstPrinter().print(expr);
+    }
+
+    @Benchmark
+    public String printCompact() {
+        return new AstPrinter().print(ast);
+    }
+
+    @Benchmark
+    public String printStreaming() throws IOException {
+        StringWriter out = new StringWriter();
+        new AstPrinter().print(expr, AstPrinter.Notation.RPN, out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,57 @@
+package lox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+    private static final String FORMULA = "(price * quantity - discount) / (1 + rate) > threshold == !(flagged > 50)";
+
+    @Param({"1000000"})
+    public int rows;
+
+    // 1 walks the tree once per row.
+    @Param({"1", "1024"})
+    public int chunk;
+
+    private final Interpreter interpreter = new Interpreter(0);
+    private CompactAst ast;
+    private final Map<String, double[]> columns = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        ast = CompactAst.of(Benchmarks.parse(FORMULA));
+        Random random = new Random(1);
+        for (String name : new String[] {"price", "quantity", "discount", "rate", "threshold", "flagged"}) {
+            double[] column = new double[rows];
+            for (int i = 0; i < rows; i++) {
+                column[i] = random.nextInt(1000) / 10.0;
+            }
+            columns.put(name, column);
+        }
+    }
+
+    @Benchmark
+    public double[] evaluate() {
+        return interpreter.interpretBatch(ast, columns, rows, chunk, new Diagnostics());
+    }
+}
@@ -0,0 +1,17 @@
+package lox;
+
+final class Benchmarks {
+    private Benchmarks() {}
+
+    /**
+     * Scan and parse a generated source, failing loudly if it is not valid.
+     */
+    static Expr parse(String source) {
+        Diagnostics diagnostics = new Diagnostics();
+        Expr expr = new Parser(new Scanner(source, diagnostics).scanTokenBuffer(), diagnostics).parse();
+        if (diagnostics.hadError()) {
+            throw new IllegalStateException("Invalid benchmark source: " + diagnostics.all());
+        }
+        return expr;
+    }
+}
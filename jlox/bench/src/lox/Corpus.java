@@ -0,0 +1,79 @@
+package lox;
+
+/**
+ * Generates synthetic sources for the benchmarks. Every shape is a single valid
+ * expression whose size grows with the given parameter.
+ */
+final class Corpus {
+    private Corpus() {}
+
+    /**
+     * @param shape One of wide, nested, strings or keywords.
+     * @param size Number of operands, or nesting depth for the nested shape.
+     */
+    static String generate(String shape, int size) {
+        switch (shape) {
+            case "wide": return wideSum(size);
+            case "nested": return nestedGroupings(size);
+            case "strings": return strings(size);
+            case "keywords": return keywords(size);
+        }
+        throw new IllegalArgumentException("Unknown corpus shape: " + shape);
+    }
+
+    /**
+     * 1 + 2 * 3 - 4 / 5 + ..., one long left-associative chain.
+     */
+    static String wideSum(int size) {
+        StringBuilder builder = new StringBuilder();
+        String[] operators = {" + ", " * ", " - ", " / "};
+        builder.append(1);
+        for (int i = 1; i < size; i++) {
+            builder.append(operators[i % operators.length]).append(i + 1);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * (1 + (2 + (3 + ...))), one grouping per level.
+     */
+    static String nestedGroupings(int depth) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append('(').append(i + 1).append(" + ");
+        }
+        builder.append(0);
+        for (int i = 0; i < depth; i++) {
+            builder.append(')');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * "fragment 0" + "fragment 1" + ...
+     */
+    static String strings(int size) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(" + ");
+            }
+            builder.append("\"fragment ").append(i).append('"');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * true == false != nil == !true ..., mostly keyword tokens.
+     */
+    static String keywords(int size) {
+        StringBuilder builder = new StringBuilder();
+        String[] operands = {"true", "false", "nil", "!true"};
+        String[] operators = {" == ", " != "};
+        builder.append(operands[0]);
+        for (int i = 1; i < size; i++) {
+            builder.append(operators[i % operators.length]).append(operands[i % operands.length]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Deep trees are walked recursively.
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+    @Param({"wide", "nested", "strings", "keywords"})
+    public String shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    // Never compiles, so the tree walkers are measured as such.
+    private final Interpreter interpreter = new Interpreter(0);
+    private final Interpreter compiling = new Interpreter();
+    private final VM vm = new VM();
+    private Expr expr;
+    private Chunk chunk;
+    private CompactAst ast;
+
+    @Setup
+    public void setUp() {
+        // Not optimized, constant folding would reduce every corpus to one literal.
+        expr = Benchmarks.parse(Corpus.generate(shape, size));
+        chunk = new Compiler().compile(expr);
+        ast = CompactAst.of(expr);
+    }
+
+    @Benchmark
+    public Object treeWalker() {
+        return interpreter.interpret(expr, new Diagnostics());
+    }
+
+    @Benchmark
+    public String treeWalkerPrinted() {
+        // Strings built by `+` are only copied out when printed.
+        return Interpreter.stringify(interpreter.interpret(expr, new Diagnostics()));
+    }
+
+    @Benchmark
+    public Object bytecode() {
+        return vm.interpret(chunk, new Diagnostics());
+    }
+
+    @Benchmark
+    public Object compactTreeWalker() {
+        return interpreter.interpret(ast, new Diagnostics());
+    }
+
+    @Benchmark
+    public Object compiled() {
+        // Compiled during warmup where the tree can be compiled.
+        return compiling.interpret(expr, new Diagnostics());
+    }
+}
@@ -0,0 +1,57 @@
+package lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Deep trees are walked recursively.
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    @Param({"wide", "nested", "strings", "keywords"})
+    public String shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private TokenBuffer tokens;
+
+    @Setup
+    public void setUp() {
+        tokens = new Scanner(Corpus.generate(shape, size), new Diagnostics()).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public Expr parse() {
+        return new Parser(tokens, new Diagnostics()).parse();
+    }
+
+    @Benchmark
+    public Expr parsePratt() {
+        return new Parser(tokens, new Diagnostics(), Parser.Strategy.PRATT).parse();
+    }
+
+    @Benchmark
+    public Expr parseIterative() {
+        return new Parser(tokens, new Diagnostics(), Parser.Strategy.ITERATIVE).parse();
+    }
+
+    @Benchmark
+    public CompactAst parseCompact() {
+        return new Parser(tokens, new Diagnostics()).parseCompact();
+    }
+}
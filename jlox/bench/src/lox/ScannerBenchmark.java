@@ -0,0 +1,48 @@
+package lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Deep trees are walked recursively.
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+    @Param({"wide", "nested", "strings", "keywords"})
+    public String shape;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = Corpus.generate(shape, size);
+    }
+
+    @Benchmark
+    public TokenBuffer scanTokenBuffer() {
+        return new Scanner(source, new Diagnostics()).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source, new Diagnostics()).scanTokens();
+    }
+}
@@ -0,0 +1,156 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * Random inputs for the checks, and the helpers to run them.
+ */
+final class Cases {
+    // Long enough strings concatenate to a Rope, so ropes meet strings in equality.
+    private static final String[] LITERALS = {
+            "1", "2.5", "0", "\"s\"", "\"\"", "\"0123456789abcdefghij\"", "true", "false", "nil", "x"};
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">="};
+    private static final TokenType[] BINARY_OPERATORS = {
+            TokenType.PLUS, TokenType.MINUS, TokenType.STAR, TokenType.SLASH, TokenType.EQUAL_EQUAL,
+            TokenType.BANG_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL};
+    // Includes values no source can spell, and a string now and then so that some
+    // trees cannot be compiled.
+    private static final Object[] VALUES = {
+            0.0, -0.0, 1.0, 2.5, 3.0, -1234567.0, 9999999.0, 1e7, 1e300, Double.NaN, true, false, "s"};
+    // Pieces of source, including ones that split or join tokens and comments.
+    private static final String[] FRAGMENTS = {
+            "1", "2.5", "12", ".", "+", "-", "*", "/", "(", "(", ")", ")", ";", " ", " ", "\n", "\"ab\"", "\"",
+            "//c\n", "!", "==", "!=", "<", "<=", ">", "=", "true", "nil", "x", "@", "a1", "and", "or", "var", "  "};
+    // Nesting below which a node is as likely to be an operator as a leaf.
+    private static final int MAX_DEPTH = 6;
+
+    private Cases() {}
+
+    /**
+     * @return The source of a random expression over every operator and kind of
+     *  literal, with some operators on a new line so errors come from several lines.
+     */
+    static String source(Random random) {
+        StringBuilder source = new StringBuilder();
+        appendSource(random, source, 0);
+        return source.toString();
+    }
+
+    private static void appendSource(Random random, StringBuilder source, int depth) {
+        int kind = random.nextInt(depth > MAX_DEPTH ? 3 : 10);
+        if (kind < 3) {
+            source.append(LITERALS[random.nextInt(LITERALS.length)]);
+        } else if (kind < 5) {
+            source.append(random.nextBoolean() ? "-" : "!");
+            appendSource(random, source, depth + 1);
+        } else if (kind < 7) {
+            source.append('(');
+            appendSource(random, source, depth + 1);
+            source.append(')');
+        } else {
+            appendSource(random, source, depth + 1);
+            source.append(random.nextInt(4) == 0 ? '\n' : ' ');
+            source.append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            appendSource(random, source, depth + 1);
+        }
+    }
+
+    /**
+     * @return A random source that is invalid about a fifth of the time, with one
+     *  character deleted.
+     */
+    static String maybeInvalidSource(Random random) {
+        String source = source(random);
+        if (random.nextInt(5) != 0) {
+            return source;
+        }
+        int deleted = random.nextInt(source.length());
+        return source.substring(0, deleted) + source.substring(deleted + 1);
+    }
+
+    /**
+     * @return Random text made of the given number of pieces of source, which
+     *  need not form an expression or even valid tokens.
+     */
+    static String fragments(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return A random tree of numbers and booleans, like the trees JvmCompiler
+     *  compiles, built directly so that it keeps e.g. NaN and -0.0 literals.
+     */
+    static Expr closedTree(Random random) {
+        return closedTree(random, 0);
+    }
+
+    private static Expr closedTree(Random random, int depth) {
+        switch (random.nextInt(depth > MAX_DEPTH ? 1 : 4)) {
+            case 0: {
+                Object value = VALUES[random.nextInt(VALUES.length)];
+                // Keep strings rare, or most trees would not compile.
+                return new Expr.Literal(value instanceof String && random.nextInt(4) != 0 ? 1.0 : value);
+            }
+            case 1:
+                return new Expr.Grouping(closedTree(random, depth + 1));
+            case 2: {
+                TokenType operator = random.nextInt(3) == 0 ? TokenType.MINUS : TokenType.BANG;
+                return new Expr.Unary(new Token(operator, CompactAst.lexeme(operator), null, 1),
+                        closedTree(random, depth + 1));
+            }
+            default: {
+                TokenType operator = BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)];
+                return new Expr.Binary(closedTree(random, depth + 1),
+                        new Token(operator, CompactAst.lexeme(operator), null, 1), closedTree(random, depth + 1));
+            }
+        }
+    }
+
+    /**
+     * @return A source nested the given number of levels deep, too deep to recurse on.
+     */
+    static String deepSource(int depth) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            source.append("(-");
+        }
+        source.append('1');
+        for (int i = 0; i < depth; i++) {
+            source.append(" + 2)");
+        }
+        return source.toString();
+    }
+
+    /**
+     * @return The tree parsed from deepSource(depth).
+     */
+    static Expr deepTree(int depth) {
+        Token minus = new Token(TokenType.MINUS, "-", null, 1);
+        Token plus = new Token(TokenType.PLUS, "+", null, 1);
+        Expr two = new Expr.Literal(2.0);
+        Expr expr = new Expr.Literal(1.0);
+        for (int i = 0; i < depth; i++) {
+            expr = new Expr.Grouping(new Expr.Binary(new Expr.Unary(minus, expr), plus, two));
+        }
+        return expr;
+    }
+
+    /**
+     * @return The tree of a source, or null if it has a syntax error.
+     */
+    static Expr parse(CharSequence source, Parser.Strategy strategy, Diagnostics diagnostics) {
+        return new Parser(new Scanner(source, diagnostics).scanTokenBuffer(), diagnostics, strategy).parse();
+    }
+
+    /**
+     * @return What a run produced, to compare runs with: its value and every
+     *  diagnostic it reported.
+     */
+    static String outcome(Object value, Diagnostics diagnostics) {
+        return Interpreter.stringify(value) + " " + diagnostics.all();
+    }
+}
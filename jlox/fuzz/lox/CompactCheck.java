@@ -0,0 +1,48 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * A CompactAst prints and evaluates like the Expr tree of the same source, and
+ * converting between the two loses nothing.
+ */
+final class CompactCheck {
+    private CompactCheck() {}
+
+    static void run(Random random, int cases) {
+        AstPrinter printer = new AstPrinter();
+        Interpreter interpreter = new Interpreter(0);
+        for (int i = 0; i < cases; i++) {
+            String source = Cases.maybeInvalidSource(random);
+            Diagnostics exprDiagnostics = new Diagnostics();
+            Expr expr = Cases.parse(source, Parser.Strategy.RECURSIVE_DESCENT, exprDiagnostics);
+            Diagnostics compactDiagnostics = new Diagnostics();
+            CompactAst ast = new Parser(new Scanner(source, compactDiagnostics).scanTokenBuffer(),
+                    compactDiagnostics).parseCompact();
+            if (expr == null) {
+                Fuzz.assertEqual(null, ast, source);
+                Fuzz.assertEqual(exprDiagnostics.all().toString(), compactDiagnostics.all().toString(), source);
+                continue;
+            }
+
+            String expected = printer.print(expr) + " "
+                    + Cases.outcome(interpreter.interpret(expr, exprDiagnostics), exprDiagnostics);
+            String actual = printer.print(ast) + " "
+                    + Cases.outcome(interpreter.interpret(ast, compactDiagnostics), compactDiagnostics);
+            Fuzz.assertEqual(expected, actual, source);
+            Fuzz.assertEqual(expr, ast.toExpr(), source);
+            Fuzz.assertEqual(printer.print(expr), printer.print(CompactAst.of(expr)), source);
+        }
+
+        // Compact trees are printed and evaluated without recursion.
+        int depth = 100_000;
+        Expr deep = Cases.deepTree(depth);
+        CompactAst ast = CompactAst.of(deep);
+        Fuzz.assertEqual(printer.print(deep), printer.print(ast), "deep tree");
+        Diagnostics exprDiagnostics = new Diagnostics();
+        Diagnostics compactDiagnostics = new Diagnostics();
+        Fuzz.assertEqual(Cases.outcome(interpreter.interpretIterative(deep, exprDiagnostics), exprDiagnostics),
+                Cases.outcome(interpreter.interpret(ast, compactDiagnostics), compactDiagnostics), "deep tree");
+        Fuzz.assertEqual(deep, ast.toExpr(), "deep tree");
+    }
+}
@@ -0,0 +1,91 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * After any sequence of edits a Document has the same tokens, trees and errors as
+ * a Document made from its text in one go, while rescanning less.
+ */
+final class DocumentCheck {
+    // Edits made to each document before starting on a new one.
+    private static final int EDITS = 20;
+
+    private DocumentCheck() {}
+
+    /**
+     * @param cases Number of edits to check.
+     */
+    static void run(Random random, int cases) {
+        long rescanned = 0;
+        long scanned = 0;
+        Document document = null;
+        for (int i = 0; i < cases; i++) {
+            if (i % EDITS == 0) {
+                document = new Document(Cases.fragments(random, 5 + random.nextInt(40)));
+            }
+            String before = document.text();
+            int offset = random.nextInt(before.length() + 1);
+            int deleted = random.nextInt(Math.min(4, before.length() - offset) + 1);
+            String inserted = random.nextInt(3) == 0 ? "" : Cases.fragments(random, 1 + random.nextInt(2));
+            document.edit(offset, deleted, inserted);
+
+            Document fresh = new Document(document.text());
+            String input = "edit(" + offset + ", " + deleted + ", \"" + inserted + "\") of \"" + before + "\"";
+            Fuzz.assertEqual(state(fresh), state(document), input);
+            rescanned += document.rescannedTokens();
+            scanned += fresh.tokens().size();
+        }
+        Fuzz.assertTrue(rescanned < scanned, "rescanned " + rescanned + " of " + scanned + " tokens", "every edit");
+    }
+
+    /**
+     * @return Every token, tree and error of the document, with the lines they are on.
+     */
+    private static String state(Document document) {
+        StringBuilder state = new StringBuilder();
+        TokenBuffer tokens = document.tokens();
+        for (int i = 0; i < tokens.size(); i++) {
+            state.append(tokens.type(i)).append(':').append(tokens.start(i)).append(':').append(tokens.length(i))
+                    .append(':').append(tokens.line(i)).append(':').append(tokens.literal(i)).append(' ');
+        }
+        state.append('\n');
+        for (Expr expr : document.expressions()) {
+            appendTree(expr, state);
+            state.append("; ");
+        }
+        return state.append('\n').append(document.diagnostics()).toString();
+    }
+
+    private static void appendTree(Expr expr, StringBuilder out) {
+        switch (expr.kind) {
+            case Expr.BINARY: {
+                Expr.Binary binary = (Expr.Binary) expr;
+                out.append('(');
+                appendTree(binary.left, out);
+                out.append(' ').append(binary.operator.lexeme).append('@').append(binary.operator.line).append(' ');
+                appendTree(binary.right, out);
+                out.append(')');
+                break;
+            }
+            case Expr.GROUPING:
+                out.append('[');
+                appendTree(((Expr.Grouping) expr).expression, out);
+                out.append(']');
+                break;
+            case Expr.UNARY: {
+                Expr.Unary unary = (Expr.Unary) expr;
+                out.append('(').append(unary.operator.lexeme).append('@').append(unary.operator.line);
+                appendTree(unary.right, out);
+                out.append(')');
+                break;
+            }
+            case Expr.VARIABLE: {
+                Token name = ((Expr.Variable) expr).name;
+                out.append(name.lexeme).append('@').append(name.line);
+                break;
+            }
+            default:
+                out.append(((Expr.Literal) expr).value);
+        }
+    }
+}
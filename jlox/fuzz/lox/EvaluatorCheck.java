@@ -0,0 +1,51 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * Every way of evaluating a tree gives the same value, or reports the same runtime
+ * error: the tree walker, its iterative form, the bytecode VM, and the walker on
+ * the optimized tree. Lox.run() agrees with them under every RunOptions.
+ */
+final class EvaluatorCheck {
+    private static final RunOptions[] OPTIONS = {
+            RunOptions.DEFAULT,
+            new RunOptions(Parser.Strategy.RECURSIVE_DESCENT, true),
+            new RunOptions(Parser.Strategy.ITERATIVE, false),
+            new RunOptions(Parser.Strategy.PRATT, true),
+    };
+
+    private EvaluatorCheck() {}
+
+    static void run(Random random, int cases) {
+        Interpreter walker = new Interpreter(0);
+        VM vm = new VM();
+        for (int i = 0; i < cases; i++) {
+            String source = Cases.source(random);
+            Expr expr = Cases.parse(source, Parser.Strategy.RECURSIVE_DESCENT, new Diagnostics());
+
+            Diagnostics diagnostics = new Diagnostics();
+            String expected = Cases.outcome(walker.interpret(expr, diagnostics), diagnostics);
+            diagnostics = new Diagnostics();
+            Fuzz.assertEqual(expected, Cases.outcome(walker.interpretIterative(expr, diagnostics), diagnostics),
+                    source);
+            diagnostics = new Diagnostics();
+            Fuzz.assertEqual(expected, Cases.outcome(vm.interpret(new Compiler().compile(expr), diagnostics),
+                    diagnostics), source);
+
+            Optimizer optimizer = new Optimizer();
+            Expr optimized = optimizer.optimize(expr);
+            diagnostics = new Diagnostics();
+            Fuzz.assertEqual(expected, Cases.outcome(walker.interpret(optimized, diagnostics), diagnostics),
+                    source);
+            Fuzz.assertEqual(CompactAst.of(expr).size() - CompactAst.of(optimized).size(), optimizer.removed(),
+                    source);
+
+            for (RunOptions options : OPTIONS) {
+                diagnostics = new Diagnostics();
+                RunResult result = Lox.run(source, diagnostics, options);
+                Fuzz.assertEqual(expected, Cases.outcome(result.value, diagnostics), source);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package lox;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Randomized checks that the different ways of scanning, parsing, printing and
+ * evaluating a source agree with each other. `gradle fuzz` runs every check, and
+ * `gradle check` runs it too. Extra options can be passed with -PfuzzArgs="cases
+ * seed": how many random cases each check tries, and the seed. A failure reports
+ * its seed, so it can be reproduced.
+ */
+public final class Fuzz {
+    private static final int DEFAULT_CASES = 2000;
+    private static final long DEFAULT_SEED = 1;
+
+    // Every check, by name, in the order they run.
+    private static final Map<String, Check> CHECKS = new LinkedHashMap<>();
+
+    static {
+        CHECKS.put("parser strategies", ParserCheck::run);
+        CHECKS.put("compact trees", CompactCheck::run);
+        CHECKS.put("printers", PrinterCheck::run);
+        CHECKS.put("evaluators", EvaluatorCheck::run);
+        CHECKS.put("compiled trees", JitCheck::run);
+        CHECKS.put("document edits", DocumentCheck::run);
+        CHECKS.put("streamed input", StreamCheck::run);
+        CHECKS.put("snapshots", SnapshotCheck::run);
+        CHECKS.put("ropes", RopeCheck::run);
+    }
+
+    /**
+     * A property checked on many random cases.
+     */
+    interface Check {
+        /**
+         * @throws AssertionError Describing the first case that failed.
+         */
+        void run(Random random, int cases);
+    }
+
+    private Fuzz() {}
+
+    public static void main(String[] args) {
+        int cases = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CASES;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SEED;
+
+        int failed = 0;
+        for (Map.Entry<String, Check> check : CHECKS.entrySet()) {
+            long start = System.nanoTime();
+            try {
+                check.getValue().run(new Random(seed), cases);
+                System.out.printf("%-22s %d cases ok in %d ms%n", check.getKey(), cases,
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (AssertionError e) {
+                failed++;
+                System.out.println(check.getKey() + " failed with seed " + seed + ": " + e.getMessage());
+            }
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Fail the check unless the two results are equal.
+     * @param input The case, shown if it fails.
+     */
+    static void assertEqual(Object expected, Object actual, Object input) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(describe(input) + "\n  expected: " + describe(expected)
+                    + "\n  actual:   " + describe(actual));
+        }
+    }
+
+    /**
+     * Fail the check unless the condition holds.
+     * @param input The case, shown if it fails.
+     */
+    static void assertTrue(boolean condition, String message, Object input) {
+        if (!condition) {
+            throw new AssertionError(describe(input) + "\n  " + message);
+        }
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof Expr) {
+            return new AstPrinter().print((Expr) value);
+        }
+        // Keep a source on one line.
+        return String.valueOf(value).replace("\n", "\\n");
+    }
+}
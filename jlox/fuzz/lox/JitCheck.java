@@ -0,0 +1,40 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * Trees compiled by JvmCompiler evaluate to exactly what the tree walker gives,
+ * and an interpreter that compiles hot trees gives the same outcomes as one that
+ * never compiles. The Optimizer folds every tree the compiler takes to a literal.
+ */
+final class JitCheck {
+    private JitCheck() {}
+
+    static void run(Random random, int cases) {
+        Interpreter walker = new Interpreter(0);
+        // Compiles every tree the first time it is evaluated.
+        Interpreter compiling = new Interpreter(1);
+        Optimizer optimizer = new Optimizer();
+        int compiled = 0;
+        for (int i = 0; i < cases; i++) {
+            Expr expr = Cases.closedTree(random);
+            Diagnostics walked = new Diagnostics();
+            Object expected = walker.interpret(expr, walked);
+
+            CompiledExpr code = JvmCompiler.compile(expr);
+            if (code != null) {
+                compiled++;
+                Fuzz.assertTrue(!walked.hadRuntimeError(), "compiled a tree that fails: " + walked.all(), expr);
+                // Equal like Lox values are, so NaN equals NaN and 0 differs from -0.
+                Fuzz.assertEqual(expected, code.evaluate(), expr);
+                Fuzz.assertTrue(optimizer.optimize(expr) instanceof Expr.Literal,
+                        "compiled a tree the optimizer does not fold", expr);
+            }
+            Diagnostics diagnostics = new Diagnostics();
+            Fuzz.assertEqual(Cases.outcome(expected, walked),
+                    Cases.outcome(compiling.interpret(expr, diagnostics), diagnostics), expr);
+        }
+        // Most trees are not a lone literal and have no string, so compile; fail if none did.
+        Fuzz.assertTrue(cases == 0 || compiled > cases / 4, "only " + compiled + " trees compiled", cases + " trees");
+    }
+}
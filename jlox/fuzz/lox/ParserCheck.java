@@ -0,0 +1,33 @@
+package lox;
+
+import java.util.Random;
+
+/**
+ * Every parser strategy builds the same tree, or reports the same syntax errors,
+ * for the same source.
+ */
+final class ParserCheck {
+    private ParserCheck() {}
+
+    static void run(Random random, int cases) {
+        AstPrinter printer = new AstPrinter();
+        for (int i = 0; i < cases; i++) {
+            String source = Cases.maybeInvalidSource(random);
+            String expected = parsed(source, Parser.Strategy.RECURSIVE_DESCENT, printer);
+            Fuzz.assertEqual(expected, parsed(source, Parser.Strategy.ITERATIVE, printer), source);
+            Fuzz.assertEqual(expected, parsed(source, Parser.Strategy.PRATT, printer), source);
+        }
+
+        // Only the iterative parser takes input this deep.
+        int depth = 100_000;
+        Diagnostics diagnostics = new Diagnostics();
+        Expr expr = Cases.parse(Cases.deepSource(depth), Parser.Strategy.ITERATIVE, diagnostics);
+        Fuzz.assertEqual(Cases.deepTree(depth), expr, "deep source");
+    }
+
+    private static String parsed(String source, Parser.Strategy strategy, AstPrinter printer) {
+        Diagnostics diagnostics = new Diagnostics();
+        Expr expr = Cases.parse(source, strategy, diagnostics);
+        return (expr == null ? "null" : printer.print(expr)) + " " + diagnostics.all();
+    }
+}
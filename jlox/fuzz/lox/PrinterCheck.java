@@ -0,0 +1,70 @@
+package lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Every way of printing a tree writes the same text as a plain recursive printer,
+ * in both notations, and print() takes trees too deep to recurse on.
+ */
+final class PrinterCheck {
+    private PrinterCheck() {}
+
+    static void run(Random random, int cases) {
+        AstPrinter printer = new AstPrinter();
+        for (int i = 0; i < cases; i++) {
+            // Built trees hold numbers no source spells; parsed ones strings and names.
+            Expr expr = random.nextBoolean()
+                    ? Cases.closedTree(random)
+                    : Cases.parse(Cases.source(random), Parser.Strategy.RECURSIVE_DESCENT, new Diagnostics());
+            String rpn = reference(expr, AstPrinter.Notation.RPN);
+            Fuzz.assertEqual(rpn, printer.print(expr), expr);
+            Fuzz.assertEqual(rpn, expr.accept(printer), expr);
+            Fuzz.assertEqual(reference(expr, AstPrinter.Notation.PREFIX), streamed(printer, expr), expr);
+        }
+
+        int depth = 100_000;
+        String deep = printer.print(Cases.deepTree(depth));
+        Fuzz.assertTrue(deep.startsWith("((((") && deep.endsWith(" 2.0 +) group)"),
+                "printed as ..." + deep.substring(deep.length() - 40), "deep tree");
+        Fuzz.assertEqual(printer.print(CompactAst.of(Cases.deepTree(depth))), deep, "deep tree");
+    }
+
+    private static String streamed(AstPrinter printer, Expr expr) {
+        StringBuilder out = new StringBuilder();
+        try {
+            printer.print(expr, AstPrinter.Notation.PREFIX, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static String reference(Expr expr, AstPrinter.Notation notation) {
+        switch (expr.kind) {
+            case Expr.BINARY: {
+                Expr.Binary binary = (Expr.Binary) expr;
+                return parenthesize(binary.operator.lexeme, notation,
+                        reference(binary.left, notation), reference(binary.right, notation));
+            }
+            case Expr.GROUPING:
+                return parenthesize("group", notation, reference(((Expr.Grouping) expr).expression, notation));
+            case Expr.UNARY: {
+                Expr.Unary unary = (Expr.Unary) expr;
+                return parenthesize(unary.operator.lexeme, notation, reference(unary.right, notation));
+            }
+            case Expr.VARIABLE:
+                return ((Expr.Variable) expr).name.lexeme;
+            default: {
+                Object value = ((Expr.Literal) expr).value;
+                return value == null ? "nil" : value.toString();
+            }
+        }
+    }
+
+    private static String parenthesize(String name, AstPrinter.Notation notation, String... operands) {
+        String joined = String.join(" ", operands);
+        return notation == AstPrinter.Notation.PREFIX ? "(" + name + " " + joined + ")" : "(" + joined + " " + name + ")";
+    }
+}
@@ -0,0 +1,62 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ropes built by any sequence of concatenations, sharing parts with each other and
+ * flattened in any order, hold the same text as the Strings concatenated the same
+ * way.
+ */
+final class RopeCheck {
+    // Concatenations per case.
+    private static final int STEPS = 40;
+    // Joining ropes to themselves doubles their length; stop well before that
+    // takes long.
+    private static final int MAX_LENGTH = 1 << 16;
+
+    private RopeCheck() {}
+
+    static void run(Random random, int cases) {
+        for (int i = 0; i < cases; i++) {
+            List<CharSequence> ropes = new ArrayList<>();
+            List<String> strings = new ArrayList<>();
+            ropes.add("");
+            strings.add("");
+            for (int step = 0; step < STEPS; step++) {
+                int left = random.nextInt(ropes.size());
+                int right = random.nextInt(ropes.size());
+                if (random.nextBoolean() || ropes.get(left).length() + ropes.get(right).length() > MAX_LENGTH) {
+                    // A new leaf, instead of another rope.
+                    String piece = "piece" + random.nextInt(1000);
+                    ropes.add(piece);
+                    strings.add(piece);
+                    right = ropes.size() - 1;
+                }
+                CharSequence rope = Rope.concat(ropes.get(left), ropes.get(right));
+                String string = strings.get(left) + strings.get(right);
+                ropes.add(rope);
+                strings.add(string);
+                // Flatten some ropes early, so later ones have flat parts.
+                if (random.nextInt(4) == 0) {
+                    ropes.get(random.nextInt(ropes.size())).toString();
+                }
+            }
+            for (int j = 0; j < ropes.size(); j++) {
+                CharSequence rope = ropes.get(j);
+                Fuzz.assertEqual(strings.get(j).length(), rope.length(), "rope " + j);
+                Fuzz.assertEqual(strings.get(j), rope.toString(), "rope " + j);
+                if (rope instanceof Rope) {
+                    // Equal to a rope of the same text split elsewhere, but never to a String.
+                    String text = strings.get(j);
+                    int split = 1 + random.nextInt(text.length() - 1);
+                    CharSequence other = Rope.concat(text.substring(0, split), text.substring(split));
+                    Fuzz.assertTrue(rope.equals(other) && rope.hashCode() == other.hashCode(),
+                            "not equal to " + other.getClass().getSimpleName() + " split at " + split, text);
+                    Fuzz.assertTrue(!rope.equals(text) && !text.equals(rope), "equal to a String", text);
+                }
+            }
+        }
+    }
+}
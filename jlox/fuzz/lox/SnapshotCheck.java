@@ -0,0 +1,77 @@
+package lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * A snapshot reads back as the tree or tokens it was written from. A damaged one
+ * is rejected, by reading as null or throwing IOException, but is never loaded as
+ * something else.
+ */
+final class SnapshotCheck {
+    private SnapshotCheck() {}
+
+    static void run(Random random, int cases) {
+        try {
+            Path directory = Files.createTempDirectory("snapshots");
+            Path path = directory.resolve("script.loxc");
+            try {
+                for (int i = 0; i < cases; i++) {
+                    check(random, path);
+                }
+            } finally {
+                Files.deleteIfExists(path);
+                Files.delete(directory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void check(Random random, Path path) throws IOException {
+        String source = Cases.source(random);
+        boolean tokens = random.nextBoolean();
+        Object expected;
+        if (tokens) {
+            TokenBuffer buffer = new Scanner(source, new Diagnostics()).scanTokenBuffer();
+            Snapshot.writeTokens(path, source, buffer);
+            expected = describe(buffer);
+        } else {
+            Expr expr = Cases.parse(source, Parser.Strategy.RECURSIVE_DESCENT, new Diagnostics());
+            Snapshot.writeExpr(path, source, expr, 0);
+            expected = expr;
+        }
+        Fuzz.assertEqual(expected, read(path, source, tokens), source);
+        Fuzz.assertEqual(null, read(path, source + " ", tokens), "stale snapshot of " + source);
+
+        byte[] bytes = Files.readAllBytes(path);
+        int bit = random.nextInt(bytes.length * 8);
+        bytes[bit / 8] ^= (byte) (1 << bit % 8);
+        Files.write(path, bytes);
+        try {
+            Fuzz.assertEqual(null, read(path, source, tokens), "snapshot of " + source + " with bit " + bit + " flipped");
+        } catch (IOException e) {
+            // Rejected as corrupt.
+        }
+    }
+
+    private static Object read(Path path, String source, boolean tokens) throws IOException {
+        if (tokens) {
+            TokenBuffer buffer = Snapshot.readTokens(path, source);
+            return buffer == null ? null : describe(buffer);
+        }
+        return Snapshot.readExpr(path, source, 0);
+    }
+
+    private static String describe(TokenBuffer tokens) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            out.append(tokens.token(i)).append('@').append(tokens.start(i)).append(':').append(tokens.line(i))
+                    .append(' ');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package lox;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Scanning text as it is read gives the same tokens and errors as scanning it all
+ * at once, wherever the reads happen to split it, and the parser builds the same
+ * tree from them.
+ */
+final class StreamCheck {
+    private StreamCheck() {}
+
+    static void run(Random random, int cases) {
+        AstPrinter printer = new AstPrinter();
+        for (int i = 0; i < cases; i++) {
+            // Now and then longer than the scanner reads at once.
+            String text = random.nextInt(50) == 0
+                    ? Cases.fragments(random, 5000)
+                    : random.nextBoolean() ? Cases.fragments(random, 1 + random.nextInt(40)) : Cases.source(random);
+
+            Diagnostics expectedDiagnostics = new Diagnostics();
+            List<Token> expected = new Scanner(text, expectedDiagnostics).scanTokens();
+            Diagnostics diagnostics = new Diagnostics();
+            Scanner scanner = new Scanner(new SplitReader(text, random), diagnostics);
+            List<Token> actual = new ArrayList<>();
+            Token token;
+            do {
+                token = scanner.nextToken();
+                actual.add(token);
+            } while (token.type != TokenType.EOF);
+            Fuzz.assertEqual(describe(expected) + expectedDiagnostics.all(), describe(actual) + diagnostics.all(), text);
+
+            // A streamed scan stops where the parser does, so it may not reach errors
+            // further on; any it reports must also be reported for the whole text.
+            expectedDiagnostics = new Diagnostics();
+            Expr expectedExpr = Cases.parse(text, Parser.Strategy.RECURSIVE_DESCENT, expectedDiagnostics);
+            diagnostics = new Diagnostics();
+            scanner = new Scanner(new SplitReader(text, random), diagnostics);
+            Expr expr = new Parser(new TokenWindow(scanner), diagnostics).parse();
+            Fuzz.assertEqual(expectedExpr == null ? null : printer.print(expectedExpr),
+                    expr == null ? null : printer.print(expr), text);
+            List<String> reported = new ArrayList<>();
+            for (Diagnostics.Diagnostic diagnostic : expectedDiagnostics.all()) {
+                reported.add(diagnostic.toString());
+            }
+            for (Diagnostics.Diagnostic diagnostic : diagnostics.all()) {
+                Fuzz.assertTrue(reported.contains(diagnostic.toString()),
+                        "streamed parse reported " + diagnostic + ", not in " + reported, text);
+            }
+        }
+    }
+
+    private static String describe(List<Token> tokens) {
+        StringBuilder out = new StringBuilder();
+        for (Token token : tokens) {
+            out.append(token).append('@').append(token.line).append(' ');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reader that hands out its text a few characters at a time.
+     */
+    private static final class SplitReader extends Reader {
+        private final String text;
+        private final Random random;
+        private int position = 0;
+
+        SplitReader(String text, Random random) {
+            this.text = text;
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, 1 + random.nextInt(7)), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,66 +0,0 @@
-public class AstPrinter implements Expr.Visitor<String> {
-
-    String print(Expr expr) {
-        return expr.accept(this);
-    }
-
-    @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return parenthesizeRPN(expr.operator.lexeme, expr.left, expr.right);
-    }
-
-    @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return parenthesizeRPN("group", expr.expression);
-    }
-
-    @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        if (expr.value == null) return "nil";
-        return expr.value.toString();
-    }
-
-    @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return parenthesizeRPN(expr.operator.lexeme, expr.right);
-    }
-
-    private String parenthesize(String name, Expr... exprs) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        stringBuilder.append("(").append(name);
-        for (Expr expr : exprs) {
-            stringBuilder.append(" ");
-            stringBuilder.append(expr.accept(this));
-        }
-        stringBuilder.append(")");
-        return stringBuilder.toString();
-    }
-
-    public static void main(String[] args) {
-        Expr expression = new Expr.Binary(
-                new Expr.Unary(
-                        new Token(TokenType.MINUS, "-", null, 1),
-                        new Expr.Literal(123)),
-                new Token(TokenType.STAR, "*", null, 1),
-                new Expr.Grouping(
-                        new Expr.Literal(45.67)));
-
-        System.out.println(new AstPrinter().print(expression));
-    }
-
-    private String parenthesizeRPN(String name, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-
-        builder.append("(");
-        for (Expr expr : exprs) {
-            builder.append(expr.accept(this));
-            builder.append(" ");
-        }
-        builder.append(name);
-        builder.append(")");
-        return builder.toString();
-
-    }
-
-}
@@ -1,7 +0,0 @@
-public class Interpreter implements Expr.Visitor<Object> {
-
-    @Override
-    public Object visitLiteralExpr(Expr.Literal expr) {
-        return expr.value;
-    }
-}
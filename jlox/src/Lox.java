@@ -1,86 +0,0 @@
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
-
-// Press Shift twice to open the Search Everywhere dialog and type `show whitespaces`,
-// then press Enter. You can now see whitespace characters in your code.
-public class Lox {
-    static boolean hadError = false;
-
-    public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
-            System.exit(64);
-        } else if (args.length == 1) {
-            runFile(args[0]);
-        } else {
-            runPrompt();
-        }
-    }
-
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
-
-        if (hadError) {
-            System.exit(65);
-        }
-    }
-
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
-
-        for (;;) {
-            System.out.println("> ");
-            String line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-            run(line);
-            hadError = false;
-        }
-    }
-
-    private static void run(String source) {
-        System.out.println(source);
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        Expr expr = parser.parse();
-
-        // Stop if there was a syntax error
-        if (hadError) {
-            return;
-        }
-        System.out.println(new AstPrinter().print(expr));
-
-//        for (Token token : tokens) {
-//            System.out.println(token);
-//        }
-
-    }
-
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
-    }
-
-
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF) {
-            Lox.report(token.line, " at end", message);
-        } else {
-            Lox.report(token.line, " at '" + token.lexeme + "'", message);
-        }
-    }
-}
\ No newline at end of file
@@ -1,209 +0,0 @@
-import java.util.List;
-
-//expression     → equality ;
-//equality       → comparison ( ( "!=" | "==" ) comparison )* ;
-//comparison     → term ( ( ">" | ">=" | "<" | "<=" ) term )* ;
-//term           → factor ( ( "-" | "+" ) factor )* ;
-//factor         → unary ( ( "/" | "*" ) unary )* ;
-//unary          → ( "!" | "-" ) unary | primary ;
-//primary        → NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")" ;
-
-public class Parser {
-    public static class ParseError extends RuntimeException {}
-    private final List<Token> tokens;
-    private int current = 0;
-
-
-    // Each method for parsing a grammar rule produces a syntax tree for that rule
-    // and returns it to the caller. When the body of a rule contains a nonterminal
-    // we call that other rule's method.
-    public Parser(List<Token> tokens) {
-        this.tokens = tokens;
-    }
-
-    public Expr parse() {
-        try {
-            return expression();
-        } catch (ParseError error) {
-            return null;
-        }
-    }
-
-    private Expr expression() {
-        return equality();
-    }
-
-    private Expr equality() {
-        Expr expr = comparison();
-
-        while (match(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(TokenType.LESS_EQUAL, TokenType.LESS, TokenType.GREATER, TokenType.GREATER_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr term() {
-        Expr expr = factor();
-
-        while (match(TokenType.MINUS, TokenType.PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr factor() {
-        Expr expr = unary();
-
-        while (match(TokenType.SLASH, TokenType.STAR)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-        return expr;
-    }
-
-    private Expr unary() {
-        if (match(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
-        }
-        return primary();
-    }
-
-    private Expr primary() {
-        if (match(TokenType.FALSE)) {
-            return new Expr.Literal(false);
-        }
-        if (match(TokenType.TRUE)) {
-            return new Expr.Literal(true);
-        }
-        if (match(TokenType.NIL)) {
-            return new Expr.Literal(null);
-        }
-
-        if (match(TokenType.NUMBER, TokenType.STRING)) {
-            return new Expr.Literal(previous().literal);
-        }
-
-        if (match(TokenType.LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
-        throw error(peek(), "Expected expression.");
-    }
-
-    /**
-     * Check if the current token has any of the given types and consume the token on a match.
-     * @param types types to match against.
-     * @return True if the current token matches any of the given types, false otherwise.
-     */
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Check if the current token is of the given type and do not consume the checked token
-     * @param type Type to match against.
-     * @return True if the current token matches the type parameter, false otherwise.
-     */
-    private boolean check(TokenType type) {
-        if (isAtEnd()) {
-            return false;
-        }
-        return peek().type == type;
-    }
-
-    /**
-     * Advances the current token index if possible and returns the consumed token.
-     * @return The consumed token.
-     */
-    private Token advance() {
-        if (!isAtEnd()) {
-            current++;
-        }
-        return previous();
-    }
-
-    /**
-     * @return True if we have run out of tokens to consume, false otherwise.
-     */
-    private boolean isAtEnd() {
-        return peek().type == TokenType.EOF;
-    }
-
-    /**
-     * @return The current token we have yet to consume.
-     */
-    private Token peek() {
-        return tokens.get(current);
-    }
-
-    /**
-     * @return The most recently consumed token.
-     */
-    private Token previous() {
-        return tokens.get(current - 1);
-    }
-
-    private Token consume(TokenType type, String message) {
-        if (check(type)) {
-            return advance();
-        }
-        throw error(peek(), message);
-    }
-
-    private ParseError error(Token token, String message) {
-        Lox.error(token, message);
-        return new ParseError();
-    }
-
-    /**
-     * Discard tokens until we've found a statement boundary.
-     */
-    private void synchronize() {
-        advance();
-
-        while (!isAtEnd()) {
-            if (previous().type == TokenType.SEMICOLON) {
-                return;
-            }
-        }
-
-        switch (peek().type) {
-            case CLASS:
-            case FUN:
-            case VAR:
-            case FOR:
-            case IF:
-            case WHILE:
-            case PRINT:
-            case RETURN:
-                return;
-        }
-        advance();
-    }
-
-}
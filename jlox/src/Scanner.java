@@ -1,252 +0,0 @@
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-
-    private static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and",    TokenType.AND);
-        keywords.put("class",  TokenType.CLASS);
-        keywords.put("else",   TokenType.ELSE);
-        keywords.put("false",  TokenType.FALSE);
-        keywords.put("for",    TokenType.FOR);
-        keywords.put("fun",    TokenType.FUN);
-        keywords.put("if",     TokenType.IF);
-        keywords.put("nil",    TokenType.NIL);
-        keywords.put("or",     TokenType.OR);
-        keywords.put("print",  TokenType.PRINT);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("super",  TokenType.SUPER);
-        keywords.put("this",   TokenType.THIS);
-        keywords.put("true",   TokenType.TRUE);
-        keywords.put("var",    TokenType.VAR);
-        keywords.put("while",  TokenType.WHILE);
-    }
-
-    private int start = 0;
-    private int current = 0;
-    private int line = 1;
-    private boolean isAtEnd = false;
-
-    public Scanner(String source) {
-        this.source = source;
-    }
-
-    /**
-     * Parse the source file for language tokens.
-     * @return List of tokens parsed from the source.
-     */
-    public List<Token> scanTokens() {
-        // Keep scanning tokens until we have consumed all characters
-        // from the source string
-        while (!isAtEnd()) {
-            // We are at the beginning of the next lexeme
-            start = current;
-            scanToken();
-        }
-
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
-    }
-
-    /**
-     * Scan a single language token from the source.
-     */
-    private void scanToken() {
-        char c = advance();
-        switch (c) {
-            // Single character tokens
-            case '(': addToken(TokenType.LEFT_PAREN); break;
-            case ')': addToken(TokenType.RIGHT_PAREN); break;
-            case '{': addToken(TokenType.LEFT_BRACE); break;
-            case '}': addToken(TokenType.RIGHT_BRACE); break;
-            case ',': addToken(TokenType.COMMA); break;
-            case '.': addToken(TokenType.DOT); break;
-            case '-': addToken(TokenType.MINUS); break;
-            case '+': addToken(TokenType.PLUS); break;
-            case ';': addToken(TokenType.SEMICOLON); break;
-            case '*': addToken(TokenType.STAR); break;
-
-            // One or two character tokens
-            case '!': addToken(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG); break;
-            case '=': addToken(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL); break;
-            case '<': addToken(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS); break;
-            case '>': addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER); break;
-            case '/':
-                if (match('/')) {  // comment, should be ignored
-                    while (peek() != '\n' && !isAtEnd()) {
-                        advance();
-                    }
-                } else {
-                    addToken(TokenType.SLASH);
-                }
-                break;
-
-            // Ignore whitespace.
-            case ' ':
-            case '\r':
-            case '\t':
-                break;
-            case '\n':
-                line++;
-                break;
-            case '"': string(); break;
-
-            default:
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlphaNumeric(c)) {
-                    identifier();
-                } else {
-                    Lox.error(line, "Unexpected character.");
-                    break;
-                }
-        }
-    }
-
-    /**
-     * Consume a character from the source and return it.
-     * Advances the current source character index as a side effect.
-     * @return Next character from source.
-     */
-    private char advance() {
-        char next_char = source.charAt(current);
-        current++;
-        return next_char;
-    }
-
-    /**
-     * @return the next character in the source without consuming it.
-     */
-    private char peek() {
-        if (isAtEnd()) return '\0';
-        return source.charAt(current);
-    }
-
-    /**
-     * @return the 2nd character from the current character in source without consuming it.
-     */
-    private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
-    }
-
-    /**
-     * Peeks at the next character from the current one and returns whether
-     * the argument matches the next character.
-     * @param expected Character to match with the next character in source.
-     * @return true on matching next character, false otherwise.
-     */
-    private boolean match(char expected) {
-        if (isAtEnd()) {
-            return false;
-        }
-        if (source.charAt(current) != expected) {
-            return false;
-        }
-        current++;
-        return true;
-    }
-
-    /**
-     * Parse the source for a string token and add the token to the running
-     * list of tokens.
-     */
-    private void string() {
-        // Read the string until we peek a " character or reach the end of source
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() == '\n') {
-                line++;
-            }
-            advance();
-        }
-
-        if (isAtEnd()) {
-            Lox.error(line, "Unterminated string.");
-        }
-
-        // Consume the closing "
-        advance();
-
-        // Capture the string value inside the quotes
-        String value = source.substring(start + 1, current - 1);
-        addToken(TokenType.STRING, value);
-    }
-
-    /**
-     * Parse the source for a number token and add the token to the running
-     * list of tokens.
-     */
-    private void number() {
-        while (isDigit(peek())) {
-            advance();
-        }
-        // Handle the fractional part
-        if (peek() == '.' && isDigit(peekNext())) {
-            advance();  // Consume the dot
-
-            while (isDigit(peek())) {
-                advance();
-            }
-        }
-
-        String value = source.substring(start, current);
-        addToken(TokenType.NUMBER, value);
-    }
-
-    private void identifier() {
-        while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) {
-            type = TokenType.IDENTIFIER;
-        }
-        addToken(type);
-    }
-
-    /**
-     * Add a token of given type to the running list of tokens.
-     * @param type Type of the language token.
-     */
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    /**
-     * Add a token of given type and literal to the running list of tokens.
-     * @param type Type of the language token.
-     * @param literal TODO
-     */
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
-    }
-
-    /**
-     * @return true if current character index has exceeded the length of the source file,
-     *  false otherwise.
-     */
-    private boolean isAtEnd() {
-        return current >= source.length();
-    }
-
-    private boolean isDigit(char c) {
-        return c >= '0' && c <= '9';
-    }
-
-    private boolean isAlpha(char c) {
-        return c >= 'a' && c <= 'z' ||
-                c >= 'A' && c <= 'Z' ||
-                c == '_';
-    }
-
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
-    }
-}
@@ -0,0 +1,109 @@
+package lox;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parsed expressions keyed by a hash of their source text, so a
+ * source that is run repeatedly is scanned and parsed only once. The least recently
+ * used entries are evicted once either the entry or the character budget is
+ * exceeded. Safe to share between threads.
+ */
+public class AstCache {
+
+    private static class Entry {
+        final String source;
+        final Expr expr;
+
+        Entry(String source, Expr expr) {
+            this.source = source;
+            this.expr = expr;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxChars;
+    // Iterates from least to most recently used.
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxEntries Maximum number of cached expressions.
+     * @param maxChars Maximum total length of the cached sources.
+     */
+    public AstCache(int maxEntries, long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @param source Source code to look up.
+     * @return The expression parsed from an identical source, or null.
+     */
+    public synchronized Expr get(CharSequence source) {
+        Entry entry = entries.get(hash(source));
+        // Compare the text as well, two sources may share a hash.
+        if (entry != null && CharSequence.compare(entry.source, source) == 0) {
+            hits++;
+            return entry.expr;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Cache the expression parsed from a source. Only expressions parsed without
+     * errors should be cached.
+     */
+    public synchronized void put(CharSequence source, Expr expr) {
+        if (source.length() > maxChars) {
+            return;
+        }
+        Entry entry = new Entry(source.toString(), expr);
+        Entry replaced = entries.put(hash(source), entry);
+        if (replaced != null) {
+            chars -= replaced.source.length();
+        }
+        chars += entry.source.length();
+
+        Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || chars > maxChars) {
+            chars -= eldest.next().getValue().source.length();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the source text.
+     */
+    static long hash(CharSequence source) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,319 @@
+package lox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+public class AstPrinter implements Expr.Visitor<String> {
+
+    /**
+     * Print a tree with operators after their operands, e.g. (1 2 +). The text is
+     * written by the streaming print() into one builder, so no String is built per
+     * node and arbitrarily deep trees cannot overflow the stack.
+     */
+    String print(Expr expr) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, Notation.RPN, builder);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Print a compact tree in the same format as print().
+     */
+    String print(CompactAst ast) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(ast, builder);
+        } catch (IOException e) {
+            // A StringBuilder does not throw.
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Write a compact tree into the given output in the same format as print().
+     * Its nodes are stored operands first, which is the order they are printed in,
+     * so instead of walking the tree this makes two passes over its arrays: the
+     * first finds the node each subtree starts at, where its "(" goes, and the
+     * second appends the text of each node in turn.
+     */
+    void print(CompactAst ast, Appendable out) throws IOException {
+        int size = ast.size();
+        // First node of each subtree.
+        int[] starts = new int[size];
+        // Number of subtrees that start at each node.
+        int[] opens = new int[size];
+        // Whether a node starts the right operand of a binary node.
+        boolean[] rightOperand = new boolean[size];
+        for (int node = 0; node < size; node++) {
+            switch (ast.kind(node)) {
+                case CompactAst.LITERAL:
+                case CompactAst.VARIABLE:
+                    starts[node] = node;
+                    continue;
+                case CompactAst.BINARY:
+                    starts[node] = starts[ast.left(node)];
+                    rightOperand[starts[ast.right(node)]] = true;
+                    break;
+                default:
+                    starts[node] = starts[ast.operand(node)];
+            }
+            opens[starts[node]]++;
+        }
+
+        NodePrinter printer = new NodePrinter(out);
+        try {
+            for (int node = 0; node < size; node++) {
+                if (rightOperand[node]) {
+                    out.append(' ');
+                }
+                for (int i = 0; i < opens[node]; i++) {
+                    out.append('(');
+                }
+                ast.accept(node, printer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Order of an operator and its operands in printed output.
+     */
+    enum Notation {
+        // (* 1 2), the format of parenthesize().
+        PREFIX,
+        // (1 2 *), the format of print().
+        RPN
+    }
+
+    /**
+     * Write a tree straight into the given output, e.g. a Writer for a log file.
+     * No text is built per node: operators and strings are appended as they are,
+     * and whole numbers are written digit by digit. Work still to do is kept on an
+     * explicit stack of nodes and text fragments, so deep trees cannot overflow the
+     * call stack.
+     */
+    void print(Expr expr, Notation notation, Appendable out) throws IOException {
+        Object[] work = new Object[16];
+        int top = 0;
+        work[top++] = expr;
+
+        while (top > 0) {
+            Object next = work[--top];
+            if (next instanceof String) {
+                out.append((String) next);
+                continue;
+            }
+            if (next instanceof Expr.Literal) {
+                appendLiteral(((Expr.Literal) next).value, out);
+                continue;
+            }
+            if (next instanceof Expr.Variable) {
+                out.append(((Expr.Variable) next).name.lexeme);
+                continue;
+            }
+
+            String name;
+            Expr first;
+            Expr second = null;
+            if (next instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) next;
+                name = binary.operator.lexeme;
+                first = binary.left;
+                second = binary.right;
+            } else if (next instanceof Expr.Grouping) {
+                name = "group";
+                first = ((Expr.Grouping) next).expression;
+            } else {
+                Expr.Unary unary = (Expr.Unary) next;
+                name = unary.operator.lexeme;
+                first = unary.right;
+            }
+
+            if (top + 6 > work.length) {
+                work = Arrays.copyOf(work, work.length * 2);
+            }
+            out.append('(');
+            // Pushed in reverse, so they come off in order.
+            work[top++] = ")";
+            if (notation == Notation.RPN) {
+                work[top++] = name;
+                work[top++] = " ";
+            }
+            if (second != null) {
+                work[top++] = second;
+                work[top++] = " ";
+            }
+            work[top++] = first;
+            if (notation == Notation.PREFIX) {
+                work[top++] = " ";
+                work[top++] = name;
+            }
+        }
+    }
+
+    private static void appendLiteral(Object value, Appendable out) throws IOException {
+        if (value == null) {
+            out.append("nil");
+        } else if (value instanceof Double) {
+            appendNumber((double) value, out);
+        } else {
+            // Strings and booleans print without creating a new String.
+            out.append(value.toString());
+        }
+    }
+
+    /**
+     * Append the same text as Double.toString(), without creating it for whole
+     * numbers below 10^7, which Double.toString() writes as digits followed by ".0".
+     */
+    private static void appendNumber(double value, Appendable out) throws IOException {
+        if (value != Math.rint(value) || Math.abs(value) >= 1e7) {
+            out.append(Double.toString(value));
+            return;
+        }
+        long whole = (long) value;
+        if (whole < 0 || Double.doubleToRawLongBits(value) < 0) {
+            out.append('-');
+            whole = -whole;
+        }
+        long divisor = 1;
+        while (divisor * 10 <= whole) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + whole / divisor % 10));
+        }
+        out.append(".0");
+    }
+
+    // The visitor builds the same text as print(), recursively and one String per
+    // node; print() does not use it.
+    @Override
+    public String visitBinaryExpr(Expr.Binary expr) {
+        return parenthesizeRPN(expr.operator.lexeme, expr.left, expr.right);
+    }
+
+    @Override
+    public String visitGroupingExpr(Expr.Grouping expr) {
+        return parenthesizeRPN("group", expr.expression);
+    }
+
+    @Override
+    public String visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) return "nil";
+        return expr.value.toString();
+    }
+
+    @Override
+    public String visitUnaryExpr(Expr.Unary expr) {
+        return parenthesizeRPN(expr.operator.lexeme, expr.right);
+    }
+
+    @Override
+    public String visitVariableExpr(Expr.Variable expr) {
+        return expr.name.lexeme;
+    }
+
+    /**
+     * Appends the text of one compact node that follows its operands: the value of
+     * a leaf, or the operator and ")" of anything else.
+     */
+    private static class NodePrinter implements CompactAst.Visitor<Void> {
+        private final Appendable out;
+
+        NodePrinter(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Void visitBinary(CompactAst ast, int node) {
+            return close(CompactAst.lexeme(ast.operator(node)));
+        }
+
+        @Override
+        public Void visitGrouping(CompactAst ast, int node) {
+            return close("group");
+        }
+
+        @Override
+        public Void visitLiteral(CompactAst ast, int node) {
+            try {
+                appendLiteral(ast.value(node), out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnary(CompactAst ast, int node) {
+            return close(CompactAst.lexeme(ast.operator(node)));
+        }
+
+        @Override
+        public Void visitVariable(CompactAst ast, int node) {
+            try {
+                out.append(ast.name(node));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+
+        private Void close(String name) {
+            try {
+                out.append(' ').append(name).append(')');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        }
+    }
+
+    private String parenthesize(String name, Expr... exprs) {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        stringBuilder.append("(").append(name);
+        for (Expr expr : exprs) {
+            stringBuilder.append(" ");
+            stringBuilder.append(expr.accept(this));
+        }
+        stringBuilder.append(")");
+        return stringBuilder.toString();
+    }
+
+    public static void main(String[] args) {
+        Expr expression = new Expr.Binary(
+                new Expr.Unary(
+                        new Token(TokenType.MINUS, "-", null, 1),
+                        new Expr.Literal(123)),
+                new Token(TokenType.STAR, "*", null, 1),
+                new Expr.Grouping(
+                        new Expr.Literal(45.67)));
+
+        System.out.println(new AstPrinter().print(expression));
+    }
+
+    private String parenthesizeRPN(String name, Expr... exprs) {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("(");
+        for (Expr expr : exprs) {
+            builder.append(expr.accept(this));
+            builder.append(" ");
+        }
+        builder.append(name);
+        builder.append(")");
+        return builder.toString();
+
+    }
+
+}
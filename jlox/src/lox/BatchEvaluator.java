@@ -0,0 +1,307 @@
+package lox;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Evaluates one expression for many rows of numbers at once. The tree is walked
+ * once per chunk of rows rather than once per row: each node is applied to the
+ * whole chunk in a plain loop over double arrays, which HotSpot unrolls and
+ * vectorizes, so the cost of dispatching on the node is spread over the chunk.
+ *
+ * Variables are bound to columns of numbers, so the type of every node is the same
+ * for all rows and is checked once before evaluating: a type error the tree walker
+ * would report for the first row is reported instead of evaluating any row. With
+ * no rows there is no first row, so nothing is checked or reported. Values in a
+ * chunk are doubles, with booleans as 1 and 0.
+ */
+final class BatchEvaluator {
+    private static final byte NUMBER = 0;
+    private static final byte BOOLEAN = 1;
+
+    private final CompactAst ast;
+    private final int rows;
+    // Type of each node.
+    private final byte[] types;
+    // Value of each literal node.
+    private final double[] constants;
+    // Column of each variable node.
+    private final double[][] inputs;
+
+    private BatchEvaluator(CompactAst ast, int rows) {
+        this.ast = ast;
+        this.rows = rows;
+        this.types = new byte[ast.size()];
+        this.constants = new double[ast.size()];
+        this.inputs = new double[ast.size()][];
+    }
+
+    /**
+     * @param columns Values of each variable by name, with at least rows values each.
+     * @param chunk Number of rows evaluated per walk of the tree.
+     * @return The value of the expression for each row.
+     * @throws RuntimeError if there are rows and the expression has a type error or
+     *  an undefined variable.
+     * @throws IllegalArgumentException if there are rows and the expression has a
+     *  string or nil, which a column of numbers cannot hold, or a column has fewer
+     *  than rows values.
+     */
+    static double[] evaluate(CompactAst ast, Map<String, double[]> columns, int rows, int chunk) {
+        if (rows < 0 || chunk < 1) {
+            throw new IllegalArgumentException("Invalid batch of " + rows + " rows in chunks of " + chunk);
+        }
+        if (rows == 0) {
+            return new double[0];
+        }
+        BatchEvaluator evaluator = new BatchEvaluator(ast, rows);
+        evaluator.check(columns);
+        return evaluator.run(chunk);
+    }
+
+    /**
+     * Find the type of every node and bind the variables, in postorder like the
+     * compact tree walker, so the first error found is the one it would report.
+     */
+    private void check(Map<String, double[]> columns) {
+        // Type of each value on the evaluation stack, or the error in its place.
+        Object[] stack = new Object[16];
+        int top = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            switch (ast.kind(node)) {
+                case CompactAst.LITERAL: {
+                    Object value = ast.value(node);
+                    if (value instanceof Double) {
+                        types[node] = NUMBER;
+                        constants[node] = (double) value;
+                    } else if (value instanceof Boolean) {
+                        types[node] = BOOLEAN;
+                        constants[node] = (boolean) value ? 1 : 0;
+                    } else {
+                        throw new IllegalArgumentException("Batch expressions can only hold numbers and booleans.");
+                    }
+                    stack = push(stack, top++, types[node]);
+                    break;
+                }
+                case CompactAst.VARIABLE: {
+                    double[] column = columns.get(ast.name(node));
+                    if (column == null) {
+                        stack = push(stack, top++,
+                                new RuntimeError(ast.nameToken(node), "Undefined variable '" + ast.name(node) + "'."));
+                        break;
+                    }
+                    if (column.length < rows) {
+                        throw new IllegalArgumentException("Column '" + ast.name(node) + "' has "
+                                + column.length + " values for " + rows + " rows.");
+                    }
+                    types[node] = NUMBER;
+                    inputs[node] = column;
+                    stack = push(stack, top++, NUMBER);
+                    break;
+                }
+                case CompactAst.GROUPING:
+                    types[node] = types[node - 1];
+                    break;
+                case CompactAst.UNARY: {
+                    Object operand = stack[top - 1];
+                    if (operand instanceof RuntimeError) {
+                        break;
+                    }
+                    if (ast.operator(node) == TokenType.BANG) {
+                        types[node] = BOOLEAN;
+                    } else if (operand.equals(NUMBER)) {
+                        types[node] = NUMBER;
+                    } else {
+                        stack[top - 1] = new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+                        break;
+                    }
+                    stack[top - 1] = types[node];
+                    break;
+                }
+                case CompactAst.BINARY: {
+                    top--;
+                    Object result = checkBinary(node, stack[top - 1], stack[top]);
+                    if (!(result instanceof RuntimeError)) {
+                        types[node] = (byte) result;
+                    }
+                    stack[top - 1] = result;
+                    break;
+                }
+            }
+        }
+        if (stack[0] instanceof RuntimeError) {
+            throw (RuntimeError) stack[0];
+        }
+    }
+
+    /**
+     * @return Type of the result of a binary node with operands of the given types,
+     *  or the error evaluating it would report first.
+     */
+    private Object checkBinary(int node, Object left, Object right) {
+        if (left instanceof RuntimeError) {
+            return left;
+        }
+        TokenType operator = ast.operator(node);
+        if (operator == TokenType.EQUAL_EQUAL || operator == TokenType.BANG_EQUAL) {
+            return right instanceof RuntimeError ? right : (Object) BOOLEAN;
+        }
+        if (operator == TokenType.PLUS) {
+            if (right instanceof RuntimeError) {
+                return right;
+            }
+            if (left.equals(NUMBER) && right.equals(NUMBER)) {
+                return NUMBER;
+            }
+            return new RuntimeError(ast.operatorToken(node), "Operands must be two numbers or two strings.");
+        }
+        // Like the tree walker, the left operand is rejected before the right one.
+        if (!left.equals(NUMBER)) {
+            return new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+        }
+        if (right instanceof RuntimeError) {
+            return right;
+        }
+        if (!right.equals(NUMBER)) {
+            return new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+        }
+        switch (operator) {
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return BOOLEAN;
+            default:
+                return NUMBER;
+        }
+    }
+
+    private static Object[] push(Object[] stack, int top, Object value) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top] = value;
+        return stack;
+    }
+
+    /**
+     * Evaluate the checked tree. The nodes are in postorder, so each chunk is one
+     * pass over them with a stack of chunk-sized arrays.
+     */
+    private double[] run(int chunk) {
+        int depth = 0;
+        int maxDepth = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            byte kind = ast.kind(node);
+            if (kind == CompactAst.LITERAL || kind == CompactAst.VARIABLE) {
+                maxDepth = Math.max(maxDepth, ++depth);
+            } else if (kind == CompactAst.BINARY) {
+                depth--;
+            }
+        }
+        double[][] stack = new double[maxDepth][Math.min(chunk, Math.max(rows, 1))];
+        double[] result = new double[rows];
+
+        for (int start = 0; start < rows; start += chunk) {
+            int count = Math.min(chunk, rows - start);
+            int top = 0;
+            for (int node = 0; node < ast.size(); node++) {
+                switch (ast.kind(node)) {
+                    case CompactAst.LITERAL:
+                        Arrays.fill(stack[top++], 0, count, constants[node]);
+                        break;
+                    case CompactAst.VARIABLE:
+                        System.arraycopy(inputs[node], start, stack[top++], 0, count);
+                        break;
+                    case CompactAst.UNARY:
+                        applyUnary(node, stack[top - 1], count);
+                        break;
+                    case CompactAst.BINARY:
+                        top--;
+                        applyBinary(node, stack[top - 1], stack[top], count);
+                        break;
+                    // A grouping has the values of its operand, which are already on the stack.
+                }
+            }
+            System.arraycopy(stack[0], 0, result, start, count);
+        }
+        return result;
+    }
+
+    private void applyUnary(int node, double[] a, int count) {
+        if (ast.operator(node) == TokenType.MINUS) {
+            for (int i = 0; i < count; i++) {
+                a[i] = -a[i];
+            }
+        } else if (types[node - 1] == NUMBER) {
+            // Numbers are truthy.
+            Arrays.fill(a, 0, count, 0);
+        } else {
+            for (int i = 0; i < count; i++) {
+                a[i] = 1 - a[i];
+            }
+        }
+    }
+
+    /**
+     * Apply a binary operator to a chunk, leaving the results in the left operand.
+     */
+    private void applyBinary(int node, double[] a, double[] b, int count) {
+        switch (ast.operator(node)) {
+            case PLUS:
+                for (int i = 0; i < count; i++) {
+                    a[i] += b[i];
+                }
+                break;
+            case MINUS:
+                for (int i = 0; i < count; i++) {
+                    a[i] -= b[i];
+                }
+                break;
+            case STAR:
+                for (int i = 0; i < count; i++) {
+                    a[i] *= b[i];
+                }
+                break;
+            case SLASH:
+                for (int i = 0; i < count; i++) {
+                    a[i] /= b[i];
+                }
+                break;
+            case GREATER:
+                for (int i = 0; i < count; i++) {
+                    a[i] = a[i] > b[i] ? 1 : 0;
+                }
+                break;
+            case GREATER_EQUAL:
+                for (int i = 0; i < count; i++) {
+                    a[i] = a[i] >= b[i] ? 1 : 0;
+                }
+                break;
+            case LESS:
+                for (int i = 0; i < count; i++) {
+                    a[i] = a[i] < b[i] ? 1 : 0;
+                }
+                break;
+            case LESS_EQUAL:
+                for (int i = 0; i < count; i++) {
+                    a[i] = a[i] <= b[i] ? 1 : 0;
+                }
+                break;
+            case EQUAL_EQUAL:
+            case BANG_EQUAL: {
+                double equal = ast.operator(node) == TokenType.EQUAL_EQUAL ? 1 : 0;
+                // The right operand is the node before this one.
+                if (types[ast.left(node)] != types[node - 1]) {
+                    // A number never equals a boolean.
+                    Arrays.fill(a, 0, count, 1 - equal);
+                    break;
+                }
+                // Compared like Double.equals(), by their bits.
+                for (int i = 0; i < count; i++) {
+                    a[i] = Double.doubleToLongBits(a[i]) == Double.doubleToLongBits(b[i]) ? equal : 1 - equal;
+                }
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs many scripts in one JVM. Every script is scanned, parsed and optionally
+ * evaluated as its own task on a work-stealing pool, with its own Diagnostics.
+ * Results are printed in script order regardless of the order tasks finish in.
+ */
+public class BatchRunner {
+
+    static class ScriptResult {
+        final Path path;
+        // Null if the script could not be read or crashed.
+        final Diagnostics diagnostics;
+        // Value of the script, if it was evaluated.
+        final Object value;
+        // Set if the script could not be read.
+        final IOException failure;
+        // Set if scanning, parsing or evaluating the script threw, e.g. a
+        // StackOverflowError on a script nested too deeply.
+        final Throwable crash;
+
+        ScriptResult(Path path, Diagnostics diagnostics, Object value, IOException failure, Throwable crash) {
+            this.path = path;
+            this.diagnostics = diagnostics;
+            this.value = value;
+            this.failure = failure;
+            this.crash = crash;
+        }
+    }
+
+    private final boolean evaluate;
+    private final RunOptions options;
+    private final ForkJoinPool pool;
+
+    private int syntaxErrors = 0;
+    private int runtimeErrors = 0;
+    private int unreadable = 0;
+    private int crashed = 0;
+
+    /**
+     * @param evaluate False to only scan and parse the scripts.
+     * @param options How to parse and evaluate each script.
+     * @param pool Pool the scripts are run on.
+     */
+    BatchRunner(boolean evaluate, RunOptions options, ForkJoinPool pool) {
+        this.evaluate = evaluate;
+        this.options = options;
+        this.pool = pool;
+    }
+
+    /**
+     * List the scripts to run. A directory is searched recursively for .lox files;
+     * any other file is read as a manifest with one script path per line, relative
+     * to the manifest. Blank lines and lines starting with # are ignored.
+     * @param target Directory or manifest.
+     * @return Paths of the scripts in a stable order.
+     */
+    static List<Path> scripts(Path target) throws IOException {
+        if (Files.isDirectory(target)) {
+            try (Stream<Path> files = Files.walk(target)) {
+                return files.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(".lox"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        Path base = target.toAbsolutePath().getParent();
+        List<Path> scripts = new ArrayList<>();
+        for (String line : Files.readAllLines(target, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            scripts.add(base.resolve(line));
+        }
+        return scripts;
+    }
+
+    /**
+     * Run every script and print its value, or all of its diagnostics, in the order
+     * given. In check mode the parser recovers from errors, so every syntax error of
+     * a script is reported in one pass.
+     * @param scripts Scripts to run.
+     * @param out Where the reports are printed.
+     */
+    void run(List<Path> scripts, PrintStream out) {
+        List<ForkJoinTask<ScriptResult>> tasks = new ArrayList<>(scripts.size());
+        for (Path script : scripts) {
+            tasks.add(pool.submit(() -> runScript(script)));
+        }
+
+        // Joining in submission order keeps the output deterministic while later
+        // scripts keep running in the background.
+        for (ForkJoinTask<ScriptResult> task : tasks) {
+            print(task.join(), out);
+        }
+
+        out.println("Ran " + scripts.size() + " scripts: " + syntaxErrors + " with syntax errors, "
+                + runtimeErrors + " with runtime errors, " + unreadable + " unreadable, " + crashed + " crashed.");
+    }
+
+    /**
+     * Run one script. Anything it throws is kept in its result, so one bad script
+     * cannot abort the scripts after it when its task is joined.
+     */
+    private ScriptResult runScript(Path script) {
+        Diagnostics diagnostics = new Diagnostics();
+        try {
+            CharSequence source = SourceFile.map(script);
+            if (!evaluate) {
+                Lox.check(source, diagnostics, options);
+                return new ScriptResult(script, diagnostics, null, null, null);
+            }
+            RunResult result = Lox.run(source, diagnostics, options);
+            return new ScriptResult(script, diagnostics, result.value, null, null);
+        } catch (IOException e) {
+            return new ScriptResult(script, null, null, e, null);
+        } catch (RuntimeException | StackOverflowError e) {
+            return new ScriptResult(script, null, null, null, e);
+        }
+    }
+
+    private void print(ScriptResult script, PrintStream out) {
+        if (script.failure != null) {
+            unreadable++;
+            out.println(script.path + ": Could not read script: " + script.failure.getMessage());
+            return;
+        }
+        if (script.crash != null) {
+            crashed++;
+            out.println(script.path + ": Could not run script: " + script.crash);
+            return;
+        }
+
+        Diagnostics diagnostics = script.diagnostics;
+        if (diagnostics.hadError()) {
+            syntaxErrors++;
+        } else if (diagnostics.hadRuntimeError()) {
+            runtimeErrors++;
+        }
+
+        if (diagnostics.all().isEmpty()) {
+            String value = evaluate ? Interpreter.stringify(script.value) : "ok";
+            out.println(script.path + ": " + value);
+            return;
+        }
+        for (Diagnostics.Diagnostic diagnostic : diagnostics.all()) {
+            out.println(script.path + ": " + diagnostic);
+        }
+    }
+
+    boolean hadSyntaxErrors() {
+        return syntaxErrors > 0;
+    }
+
+    boolean hadRuntimeErrors() {
+        return runtimeErrors > 0;
+    }
+
+    boolean hadUnreadableScripts() {
+        return unreadable > 0;
+    }
+
+    boolean hadCrashedScripts() {
+        return crashed > 0;
+    }
+}
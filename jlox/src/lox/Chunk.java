@@ -0,0 +1,87 @@
+package lox;
+
+import java.util.Arrays;
+
+/**
+ * A compiled expression: a flat array of bytecode with its constant pool.
+ * Instructions are one opcode byte, OP_CONSTANT and OP_GET_VARIABLE are followed
+ * by a two byte big-endian index into the constant pool.
+ */
+public class Chunk {
+    static final byte OP_CONSTANT = 0;
+    static final byte OP_NIL = 1;
+    static final byte OP_TRUE = 2;
+    static final byte OP_FALSE = 3;
+    static final byte OP_ADD = 4;
+    static final byte OP_SUBTRACT = 5;
+    static final byte OP_MULTIPLY = 6;
+    static final byte OP_DIVIDE = 7;
+    static final byte OP_NEGATE = 8;
+    static final byte OP_NOT = 9;
+    static final byte OP_EQUAL = 10;
+    static final byte OP_NOT_EQUAL = 11;
+    static final byte OP_GREATER = 12;
+    static final byte OP_GREATER_EQUAL = 13;
+    static final byte OP_LESS = 14;
+    static final byte OP_LESS_EQUAL = 15;
+    static final byte OP_RETURN = 16;
+    // Followed by the constant pool index of the variable's name, like OP_CONSTANT.
+    static final byte OP_GET_VARIABLE = 17;
+    // Fails unless the value on top of the stack is a number, leaving it there.
+    static final byte OP_CHECK_NUMBER = 18;
+
+    byte[] code = new byte[16];
+    int count = 0;
+    Object[] constants = new Object[8];
+    int constantCount = 0;
+    // Deepest the value stack gets while running the chunk.
+    int maxStack = 0;
+
+    // Offsets of the instructions that can fail at runtime (ascending), and the
+    // operator token to blame for each.
+    private int[] siteOffsets = new int[8];
+    private Token[] siteTokens = new Token[8];
+    private int siteCount = 0;
+
+    void write(byte instruction) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+        }
+        code[count++] = instruction;
+    }
+
+    /**
+     * Write an instruction that can raise a runtime error.
+     * @param operator Token to report the error at.
+     */
+    void write(byte instruction, Token operator) {
+        if (siteCount == siteOffsets.length) {
+            siteOffsets = Arrays.copyOf(siteOffsets, siteCount * 2);
+            siteTokens = Arrays.copyOf(siteTokens, siteCount * 2);
+        }
+        siteOffsets[siteCount] = count;
+        siteTokens[siteCount] = operator;
+        siteCount++;
+        write(instruction);
+    }
+
+    /**
+     * @return Index of the value in the constant pool.
+     */
+    int addConstant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constantCount * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+
+    /**
+     * @param offset Offset of an instruction that raised a runtime error.
+     * @return The operator the instruction was compiled from.
+     */
+    Token site(int offset) {
+        int slot = Arrays.binarySearch(siteOffsets, 0, siteCount, offset);
+        return siteTokens[slot];
+    }
+}
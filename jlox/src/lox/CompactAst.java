@@ -0,0 +1,297 @@
+package lox;
+
+import java.util.Arrays;
+
+/**
+ * A syntax tree stored in parallel arrays instead of one object per node. A node is
+ * an index into the arrays; its kind, operator and operand indices are ints and
+ * bytes, and literal values are kept in a side pool. Nodes are added in postorder,
+ * so the root is the last node and the last operand of a node is the node right
+ * before it; only the left operand of a binary node has to be stored.
+ */
+public class CompactAst {
+    static final byte BINARY = 0;
+    static final byte GROUPING = 1;
+    static final byte LITERAL = 2;
+    static final byte UNARY = 3;
+    static final byte VARIABLE = 4;
+
+    /**
+     * Visitor over the nodes of a CompactAst, identified by index.
+     */
+    interface Visitor<R> {
+        R visitBinary(CompactAst ast, int node);
+        R visitGrouping(CompactAst ast, int node);
+        R visitLiteral(CompactAst ast, int node);
+        R visitUnary(CompactAst ast, int node);
+        R visitVariable(CompactAst ast, int node);
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    // Token type ordinal of the operator of binary and unary nodes.
+    private byte[] operators = new byte[INITIAL_CAPACITY];
+    // Left operand of binary nodes, or the index of the value in the literal pool
+    // for literals and of the name for variables.
+    private int[] lefts = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private Object[] literals = new Object[16];
+    private int literalCount = 0;
+
+    /**
+     * @return Number of nodes in the tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return size - 1;
+    }
+
+    <R> R accept(int node, Visitor<R> visitor) {
+        switch (kinds[node]) {
+            case BINARY: return visitor.visitBinary(this, node);
+            case GROUPING: return visitor.visitGrouping(this, node);
+            case LITERAL: return visitor.visitLiteral(this, node);
+            case VARIABLE: return visitor.visitVariable(this, node);
+            default: return visitor.visitUnary(this, node);
+        }
+    }
+
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    TokenType operator(int node) {
+        return TYPES[operators[node]];
+    }
+
+    int line(int node) {
+        return lines[node];
+    }
+
+    int left(int node) {
+        return lefts[node];
+    }
+
+    int right(int node) {
+        return node - 1;
+    }
+
+    /**
+     * @return Operand of a unary or grouping node.
+     */
+    int operand(int node) {
+        return node - 1;
+    }
+
+    Object value(int node) {
+        return literals[lefts[node]];
+    }
+
+    /**
+     * @return Name of a variable node.
+     */
+    String name(int node) {
+        return (String) literals[lefts[node]];
+    }
+
+    /**
+     * Create the name token of a variable node, e.g. to report an error.
+     */
+    Token nameToken(int node) {
+        String name = name(node);
+        return new Token(TokenType.IDENTIFIER, name, name, lines[node]);
+    }
+
+    /**
+     * Create the operator token of a binary or unary node, e.g. to report an error.
+     */
+    Token operatorToken(int node) {
+        TokenType type = operator(node);
+        return new Token(type, lexeme(type), null, lines[node]);
+    }
+
+    /**
+     * Add a binary node whose right operand is the last node added.
+     */
+    int binary(int left, TokenType operator, int line) {
+        return add(BINARY, operator, line, left);
+    }
+
+    /**
+     * Add a grouping of the last node added.
+     */
+    int grouping() {
+        return add(GROUPING, null, 0, -1);
+    }
+
+    int literal(Object value) {
+        return add(LITERAL, null, 0, pool(value));
+    }
+
+    int variable(String name, int line) {
+        return add(VARIABLE, null, line, pool(name));
+    }
+
+    private int pool(Object value) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, Math.max(literalCount * 2, 16));
+        }
+        literals[literalCount] = value;
+        return literalCount++;
+    }
+
+    /**
+     * Add a unary node whose operand is the last node added.
+     */
+    int unary(TokenType operator, int line) {
+        return add(UNARY, operator, line, -1);
+    }
+
+    /**
+     * Release the capacity reserved for more nodes once the tree is complete.
+     */
+    void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        operators = Arrays.copyOf(operators, size);
+        lefts = Arrays.copyOf(lefts, size);
+        lines = Arrays.copyOf(lines, size);
+        literals = Arrays.copyOf(literals, literalCount);
+    }
+
+    private int add(byte kind, TokenType operator, int line, int left) {
+        if (size == kinds.length) {
+            int capacity = Math.max(size * 2, INITIAL_CAPACITY);
+            kinds = Arrays.copyOf(kinds, capacity);
+            operators = Arrays.copyOf(operators, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        kinds[size] = kind;
+        operators[size] = operator == null ? 0 : (byte) operator.ordinal();
+        lefts[size] = left;
+        lines[size] = line;
+        return size++;
+    }
+
+    /**
+     * Copy an Expr tree into compact form.
+     */
+    static CompactAst of(Expr root) {
+        CompactAst ast = new CompactAst();
+        // Each node is visited twice: once to schedule its operands, and once they
+        // have been added to add the node itself. The stack of added nodes only
+        // needs the left operands of binary nodes, the right one is the last added.
+        Expr[] work = new Expr[16];
+        boolean[] expanded = new boolean[16];
+        int[] added = new int[16];
+        int top = 0;
+        int done = 0;
+        work[top++] = root;
+        while (top > 0) {
+            if (top + 2 > work.length) {
+                work = Arrays.copyOf(work, work.length * 2);
+                expanded = Arrays.copyOf(expanded, expanded.length * 2);
+            }
+            Expr expr = work[top - 1];
+            if (expr instanceof Expr.Literal || expr instanceof Expr.Variable) {
+                top--;
+                if (done == added.length) {
+                    added = Arrays.copyOf(added, done * 2);
+                }
+                if (expr instanceof Expr.Literal) {
+                    added[done++] = ast.literal(((Expr.Literal) expr).value);
+                } else {
+                    Token name = ((Expr.Variable) expr).name;
+                    added[done++] = ast.variable(name.lexeme, name.line);
+                }
+            } else if (!expanded[top - 1]) {
+                expanded[top - 1] = true;
+                if (expr instanceof Expr.Binary) {
+                    work[top] = ((Expr.Binary) expr).right;
+                    expanded[top++] = false;
+                    work[top] = ((Expr.Binary) expr).left;
+                    expanded[top++] = false;
+                } else if (expr instanceof Expr.Grouping) {
+                    work[top] = ((Expr.Grouping) expr).expression;
+                    expanded[top++] = false;
+                } else {
+                    work[top] = ((Expr.Unary) expr).right;
+                    expanded[top++] = false;
+                }
+            } else {
+                top--;
+                int node;
+                if (expr instanceof Expr.Binary) {
+                    Expr.Binary binary = (Expr.Binary) expr;
+                    done--;
+                    node = ast.binary(added[--done], binary.operator.type, binary.operator.line);
+                } else if (expr instanceof Expr.Grouping) {
+                    done--;
+                    node = ast.grouping();
+                } else {
+                    Expr.Unary unary = (Expr.Unary) expr;
+                    done--;
+                    node = ast.unary(unary.operator.type, unary.operator.line);
+                }
+                added[done++] = node;
+            }
+        }
+        ast.trim();
+        return ast;
+    }
+
+    /**
+     * Build the equivalent Expr tree, e.g. for code that has not been ported to the
+     * compact form. Operands come before their node, so one pass in index order
+     * builds every node after its operands.
+     */
+    Expr toExpr() {
+        Expr[] exprs = new Expr[size];
+        for (int node = 0; node < size; node++) {
+            switch (kinds[node]) {
+                case BINARY:
+                    exprs[node] = new Expr.Binary(exprs[lefts[node]], operatorToken(node), exprs[node - 1]);
+                    break;
+                case GROUPING:
+                    exprs[node] = new Expr.Grouping(exprs[node - 1]);
+                    break;
+                case LITERAL:
+                    exprs[node] = new Expr.Literal(value(node));
+                    break;
+                case VARIABLE:
+                    exprs[node] = new Expr.Variable(nameToken(node));
+                    break;
+                default:
+                    exprs[node] = new Expr.Unary(operatorToken(node), exprs[node - 1]);
+            }
+        }
+        return exprs[root()];
+    }
+
+    /**
+     * @return Source text of an operator token.
+     */
+    static String lexeme(TokenType type) {
+        switch (type) {
+            case BANG: return "!";
+            case BANG_EQUAL: return "!=";
+            case EQUAL_EQUAL: return "==";
+            case GREATER: return ">";
+            case GREATER_EQUAL: return ">=";
+            case LESS: return "<";
+            case LESS_EQUAL: return "<=";
+            case MINUS: return "-";
+            case PLUS: return "+";
+            case SLASH: return "/";
+            case STAR: return "*";
+            default: throw new IllegalArgumentException("Not an operator: " + type);
+        }
+    }
+}
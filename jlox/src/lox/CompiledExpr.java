@@ -0,0 +1,9 @@
+package lox;
+
+/**
+ * An expression tree compiled to JVM bytecode by JvmCompiler. Only trees that
+ * cannot fail at runtime are compiled, so evaluate() always returns a value.
+ */
+interface CompiledExpr {
+    Object evaluate();
+}
@@ -0,0 +1,159 @@
+package lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lowers an expression tree to bytecode for the VM. Operands are emitted before
+ * their operator, so the chunk is the tree in postfix order.
+ */
+public class Compiler implements Expr.Visitor<Void> {
+    // Constant pool indices are two bytes.
+    private static final int MAX_CONSTANTS = 65536;
+
+    private final Chunk chunk = new Chunk();
+    // Lets equal literals share one constant pool entry.
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private int stackDepth = 0;
+    // Whether the expression compiled last always leaves a number on the stack.
+    private boolean number;
+    // Set once the constant pool is full; the rest is compiled but the chunk dropped.
+    private boolean tooManyConstants = false;
+
+    /**
+     * @param expr Expression to compile.
+     * @return Chunk that evaluates the expression and returns its value, or null if
+     *  the expression has more distinct constants than a chunk can index.
+     */
+    Chunk compile(Expr expr) {
+        expr.accept(this);
+        chunk.write(Chunk.OP_RETURN);
+        return tooManyConstants ? null : chunk;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        boolean leftNumber = number;
+        if (!leftNumber && isNumeric(expr.operator.type)) {
+            // Like the tree walker, reject the left operand before evaluating the
+            // right one, whose own error would otherwise be reported instead.
+            chunk.write(Chunk.OP_CHECK_NUMBER, expr.operator);
+        }
+        expr.right.accept(this);
+        boolean rightNumber = number;
+
+        switch (expr.operator.type) {
+            case PLUS: chunk.write(Chunk.OP_ADD, expr.operator); break;
+            case MINUS: chunk.write(Chunk.OP_SUBTRACT, expr.operator); break;
+            case STAR: chunk.write(Chunk.OP_MULTIPLY, expr.operator); break;
+            case SLASH: chunk.write(Chunk.OP_DIVIDE, expr.operator); break;
+            case EQUAL_EQUAL: chunk.write(Chunk.OP_EQUAL); break;
+            case BANG_EQUAL: chunk.write(Chunk.OP_NOT_EQUAL); break;
+            case GREATER: chunk.write(Chunk.OP_GREATER, expr.operator); break;
+            case GREATER_EQUAL: chunk.write(Chunk.OP_GREATER_EQUAL, expr.operator); break;
+            case LESS: chunk.write(Chunk.OP_LESS, expr.operator); break;
+            case LESS_EQUAL: chunk.write(Chunk.OP_LESS_EQUAL, expr.operator); break;
+        }
+        // Two operands popped, one result pushed.
+        stackDepth--;
+        switch (expr.operator.type) {
+            case MINUS:
+            case STAR:
+            case SLASH:
+                number = true;
+                break;
+            case PLUS:
+                // Unless both are numbers, both may be strings.
+                number = leftNumber && rightNumber;
+                break;
+            default:
+                number = false;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            chunk.write(Chunk.OP_NIL);
+        } else if (expr.value instanceof Boolean) {
+            chunk.write((boolean) expr.value ? Chunk.OP_TRUE : Chunk.OP_FALSE);
+        } else {
+            chunk.write(Chunk.OP_CONSTANT);
+            writeConstant(expr.value);
+        }
+        number = expr.value instanceof Double;
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        // Nothing defines variables yet, so reading one is a runtime error.
+        chunk.write(Chunk.OP_GET_VARIABLE, expr.name);
+        writeConstant(expr.name.lexeme);
+        number = false;
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+
+        switch (expr.operator.type) {
+            case MINUS: chunk.write(Chunk.OP_NEGATE, expr.operator); break;
+            case BANG: chunk.write(Chunk.OP_NOT); break;
+        }
+        number = expr.operator.type == TokenType.MINUS;
+        return null;
+    }
+
+    /**
+     * @return Whether a binary operator only takes numbers.
+     */
+    private static boolean isNumeric(TokenType operator) {
+        switch (operator) {
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Write the two byte constant pool index of a value after an instruction.
+     */
+    private void writeConstant(Object value) {
+        Integer known = constantIndices.get(value);
+        int index = 0;
+        if (known != null) {
+            index = known;
+        } else if (chunk.constantCount == MAX_CONSTANTS) {
+            tooManyConstants = true;
+        } else {
+            index = chunk.addConstant(value);
+            constantIndices.put(value, index);
+        }
+        chunk.write((byte) (index >> 8));
+        chunk.write((byte) index);
+    }
+
+    private void push() {
+        stackDepth++;
+        chunk.maxStack = Math.max(chunk.maxStack, stackDepth);
+    }
+}
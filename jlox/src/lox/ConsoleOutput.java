@@ -0,0 +1,55 @@
+package lox;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * Standard output and error of the command line. System.out flushes every line,
+ * which dominates the cost of running many small expressions through a pipe. This
+ * output is buffered instead and only flushed at the boundaries where someone may
+ * be waiting for it: before the REPL blocks on input, before anything is written
+ * to the error stream, so a terminal still shows both in order, and on exit.
+ */
+final class ConsoleOutput {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    static final PrintStream out = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), BUFFER_SIZE),
+            false, Charset.defaultCharset());
+
+    static final PrintStream err = new PrintStream(new FilterOutputStream(System.err) {
+        @Override
+        public void write(int b) throws IOException {
+            ConsoleOutput.out.flush();
+            super.out.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ConsoleOutput.out.flush();
+            super.out.write(bytes, offset, length);
+        }
+    }, true, Charset.defaultCharset());
+
+    private ConsoleOutput() {}
+
+    /**
+     * Write out everything buffered so far.
+     */
+    static void flush() {
+        out.flush();
+    }
+
+    /**
+     * Flush the output and terminate with the given status.
+     */
+    static void exit(int status) {
+        out.flush();
+        System.exit(status);
+    }
+}
@@ -0,0 +1,102 @@
+package lox;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the errors reported while scanning, parsing and evaluating one source.
+ * Every run gets its own instance, so independent runs never share error state.
+ */
+public class Diagnostics {
+
+    public static class Diagnostic {
+        final int line;
+        final String where;
+        final String message;
+        final boolean runtime;
+
+        Diagnostic(int line, String where, String message, boolean runtime) {
+            this.line = line;
+            this.where = where;
+            this.message = message;
+            this.runtime = runtime;
+        }
+
+        /**
+         * @return The same diagnostic on a line further down, or up, the source.
+         */
+        Diagnostic movedBy(int lines) {
+            return new Diagnostic(line + lines, where, message, runtime);
+        }
+
+        @Override
+        public String toString() {
+            if (runtime) {
+                return message + "\n[line " + line + "]";
+            }
+            return "[line " + line + "] Error" + where + ": " + message;
+        }
+    }
+
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // Where to print each diagnostic as it is reported, may be null.
+    private final PrintStream echo;
+    private boolean hadError = false;
+    private boolean hadRuntimeError = false;
+
+    public Diagnostics() {
+        this(null);
+    }
+
+    public Diagnostics(PrintStream echo) {
+        this.echo = echo;
+    }
+
+    void error(int line, String message) {
+        report(new Diagnostic(line, "", message, false));
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(new Diagnostic(token.line, " at end", message, false));
+        } else {
+            report(new Diagnostic(token.line, " at '" + token.lexeme + "'", message, false));
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        report(new Diagnostic(error.token.line, "", error.getMessage(), true));
+    }
+
+    private void report(Diagnostic diagnostic) {
+        diagnostics.add(diagnostic);
+        if (diagnostic.runtime) {
+            hadRuntimeError = true;
+        } else {
+            hadError = true;
+        }
+        if (echo != null) {
+            echo.println(diagnostic);
+        }
+    }
+
+    /**
+     * @return True if a syntax error was reported.
+     */
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    /**
+     * @return Every diagnostic in the order it was reported.
+     */
+    public List<Diagnostic> all() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+}
@@ -0,0 +1,506 @@
+package lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source that is edited in place, e.g. by an editor, and kept scanned and parsed.
+ * An edit only rescans the tokens around it and only reparses the innermost
+ * parenthesized expression, or else the statements, that contain the changed
+ * tokens. The tokens and syntax trees around them are moved along and reused.
+ */
+public class Document {
+    // The scanner looks at most this many characters past the end of a token.
+    private static final int LOOKAHEAD = 2;
+
+    /**
+     * Tokens [start, end) of the source that were parsed as one expression and the
+     * semicolon after it.
+     */
+    private static class Statement {
+        Expr expr; // null if it had a syntax error
+        int start;
+        int end;
+        List<Diagnostics.Diagnostic> errors;
+        // Lines the statement has moved since its tokens were parsed.
+        int lineShift = 0;
+    }
+
+    private static class ScanError {
+        int offset; // where the scanner was when it reported the error
+        Diagnostics.Diagnostic diagnostic;
+
+        ScanError(int offset, Diagnostics.Diagnostic diagnostic) {
+            this.offset = offset;
+            this.diagnostic = diagnostic;
+        }
+    }
+
+    private final StringBuilder text;
+    private final TokenBuffer tokens;
+    private final List<Statement> statements = new ArrayList<>();
+    private final List<ScanError> scanErrors = new ArrayList<>();
+    // Number of tokens each node of the syntax trees was parsed from.
+    private final Map<Expr, Integer> sizes = new IdentityHashMap<>();
+
+    private int rescanned;
+    private int reparsed;
+
+    public Document(CharSequence source) {
+        text = new StringBuilder(source);
+        tokens = new TokenBuffer(text);
+        Diagnostics diagnostics = new Diagnostics();
+        Scanner scanner = new Scanner(text, diagnostics, 0, 1);
+        while (scanNext(scanner, tokens, diagnostics, scanErrors)) {
+            // Scan the whole source.
+        }
+        rescanned = tokens.size();
+        reparse(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Replace part of the source and bring the tokens and syntax trees up to date.
+     * @param offset Index of the first character to replace.
+     * @param deletedLength Number of characters to remove.
+     * @param insertedText Text to put in their place.
+     */
+    public void edit(int offset, int deletedLength, String insertedText) {
+        int deletedEnd = offset + deletedLength;
+        if (offset < 0 || deletedLength < 0 || deletedEnd > text.length()) {
+            throw new IndexOutOfBoundsException(
+                    "Edit [" + offset + ", " + deletedEnd + ") outside of [0, " + text.length() + ")");
+        }
+        int charDelta = insertedText.length() - deletedLength;
+        int lineDelta = newlines(insertedText, 0, insertedText.length())
+                - newlines(text, offset, deletedEnd);
+
+        // Every token before first was scanned without looking at an edited character.
+        int kept = tokens.indexBefore(offset);
+        while (kept >= 0 && tokens.start(kept) + tokens.length(kept) + LOOKAHEAD > offset) {
+            kept--;
+        }
+        int first = kept + 1;
+        int scanFrom = kept >= 0 ? tokens.start(kept) + tokens.length(kept) : 0;
+        int scanLine = kept >= 0 ? tokens.line(kept) : 1;
+
+        text.replace(offset, deletedEnd, insertedText);
+
+        // Rescan until a token is the same as an old one after the edit. From there on
+        // the source is unchanged, so the old tokens are too.
+        Diagnostics diagnostics = new Diagnostics();
+        Scanner scanner = new Scanner(text, diagnostics, scanFrom, scanLine);
+        TokenBuffer replacement = new TokenBuffer(text);
+        List<ScanError> errors = new ArrayList<>();
+        int insertedEnd = offset + insertedText.length();
+        int resync = tokens.size();
+        while (scanNext(scanner, replacement, diagnostics, errors)) {
+            int last = replacement.size() - 1;
+            int start = replacement.start(last);
+            if (start < insertedEnd) {
+                continue;
+            }
+            int old = tokens.indexAt(start - charDelta);
+            if (old >= first
+                    && tokens.type(old) == replacement.type(last)
+                    && tokens.length(old) == replacement.length(last)
+                    && tokens.line(old) + lineDelta == replacement.line(last)) {
+                resync = old;
+                replacement.truncate(last);
+                break;
+            }
+        }
+        int resyncOffset = resync < tokens.size() ? tokens.start(resync) : Integer.MAX_VALUE;
+        updateScanErrors(scanFrom, resyncOffset, errors, charDelta, lineDelta);
+
+        tokens.splice(first, resync, replacement, charDelta, lineDelta);
+        rescanned = replacement.size();
+        updateStatements(first, resync, replacement.size() - (resync - first), lineDelta);
+    }
+
+    /**
+     * @return The current text of the document.
+     */
+    public String text() {
+        return text.toString();
+    }
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return Every expression of the document that parsed.
+     */
+    public List<Expr> expressions() {
+        List<Expr> expressions = new ArrayList<>();
+        for (Statement statement : statements) {
+            if (statement.expr == null) {
+                continue;
+            }
+            if (statement.lineShift != 0) {
+                statement.expr = moveLines(statement.expr, statement.lineShift);
+                statement.lineShift = 0;
+            }
+            expressions.add(statement.expr);
+        }
+        return expressions;
+    }
+
+    /**
+     * @return The syntax errors of the document, in the order a full scan and parse
+     *  would report them.
+     */
+    public List<Diagnostics.Diagnostic> diagnostics() {
+        List<Diagnostics.Diagnostic> diagnostics = new ArrayList<>();
+        for (ScanError error : scanErrors) {
+            diagnostics.add(error.diagnostic);
+        }
+        for (Statement statement : statements) {
+            diagnostics.addAll(statement.errors);
+        }
+        return diagnostics;
+    }
+
+    /**
+     * @return Number of tokens scanned by the last edit.
+     */
+    public int rescannedTokens() {
+        return rescanned;
+    }
+
+    /**
+     * @return Number of tokens parsed by the last edit.
+     */
+    public int reparsedTokens() {
+        return reparsed;
+    }
+
+    private static boolean scanNext(Scanner scanner, TokenBuffer buffer,
+                                    Diagnostics diagnostics, List<ScanError> errors) {
+        int offset = scanner.position();
+        int reported = diagnostics.all().size();
+        boolean more = scanner.scanNext(buffer);
+        for (Diagnostics.Diagnostic diagnostic : diagnostics.all().subList(reported, diagnostics.all().size())) {
+            errors.add(new ScanError(offset, diagnostic));
+        }
+        return more;
+    }
+
+    /**
+     * Replace the scan errors between two offsets of the old text with the ones found
+     * by rescanning, and move the ones after them along with the text.
+     */
+    private void updateScanErrors(int from, int to, List<ScanError> errors, int charDelta, int lineDelta) {
+        int index = 0;
+        while (index < scanErrors.size() && scanErrors.get(index).offset < from) {
+            index++;
+        }
+        int end = index;
+        while (end < scanErrors.size() && scanErrors.get(end).offset < to) {
+            end++;
+        }
+        for (int i = end; i < scanErrors.size(); i++) {
+            ScanError error = scanErrors.get(i);
+            error.offset += charDelta;
+            error.diagnostic = error.diagnostic.movedBy(lineDelta);
+        }
+        scanErrors.subList(index, end).clear();
+        scanErrors.addAll(index, errors);
+    }
+
+    /**
+     * Bring the statements up to date after the old tokens [first, oldEnd) have been
+     * replaced by tokenDelta more, or fewer, tokens.
+     */
+    private void updateStatements(int first, int oldEnd, int tokenDelta, int lineDelta) {
+        // A statement depends on its tokens and, unless it ends with a semicolon, on
+        // the token after it.
+        int from = 0;
+        while (from < statements.size() && !dependsOn(statements.get(from), first)) {
+            from++;
+        }
+        int to = from;
+        while (to < statements.size() && statements.get(to).start < oldEnd) {
+            to++;
+        }
+
+        // Operator tokens keep their line, so a grouping can only be reparsed on its own
+        // if the lines after it stay where they are.
+        if (to - from == 1 && lineDelta == 0
+                && reparseGrouping(statements.get(from), first, oldEnd, tokenDelta)) {
+            shift(to, tokenDelta, lineDelta);
+            return;
+        }
+        int start;
+        if (from < statements.size()) {
+            start = statements.get(from).start;
+        } else {
+            start = statements.isEmpty() ? 0 : statements.get(statements.size() - 1).end;
+        }
+        shift(to, tokenDelta, lineDelta);
+        reparse(start, from, to, first + (oldEnd - first) + tokenDelta, tokenDelta);
+    }
+
+    private boolean dependsOn(Statement statement, int token) {
+        if (statement.end > token) {
+            return true;
+        }
+        return statement.end == token
+                && (statement.end == statement.start
+                        || tokens.type(statement.end - 1) != TokenType.SEMICOLON);
+    }
+
+    /**
+     * Move the statements from the given index on by a number of tokens and lines.
+     */
+    private void shift(int from, int tokenDelta, int lineDelta) {
+        for (int i = from; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            statement.start += tokenDelta;
+            statement.end += tokenDelta;
+            if (lineDelta != 0) {
+                statement.lineShift += lineDelta;
+                statement.errors.replaceAll(error -> error.movedBy(lineDelta));
+            }
+        }
+    }
+
+    /**
+     * Parse statements from the given token, replacing the old statements [from, to),
+     * until the parser reaches the start of an old statement after the given token, or
+     * the end of the source.
+     * @param changedEnd Index after the last token that changed.
+     */
+    private void reparse(int start, int from, int to, int changedEnd, int tokenDelta) {
+        Diagnostics diagnostics = new Diagnostics();
+        Parser parser = new Parser(tokens, diagnostics);
+        parser.seek(start);
+        List<Statement> parsed = new ArrayList<>();
+        int resync = statements.size();
+        while (tokens.type(parser.position()) != TokenType.EOF) {
+            int position = parser.position();
+            if (position >= changedEnd) {
+                while (to < statements.size() && statements.get(to).start < position) {
+                    to++;
+                }
+                if (to < statements.size() && statements.get(to).start == position) {
+                    resync = to;
+                    break;
+                }
+            }
+            int reported = diagnostics.all().size();
+            Statement statement = new Statement();
+            statement.start = position;
+            statement.expr = parser.parseStatement();
+            statement.end = parser.position();
+            statement.errors = new ArrayList<>(
+                    diagnostics.all().subList(reported, diagnostics.all().size()));
+            if (statement.expr != null) {
+                measure(statement.expr);
+            }
+            parsed.add(statement);
+        }
+        reparsed = parser.position() - start;
+
+        List<Statement> replaced = statements.subList(from, resync);
+        for (Statement statement : replaced) {
+            if (statement.expr != null) {
+                forget(statement.expr);
+            }
+        }
+        replaced.clear();
+        statements.addAll(from, parsed);
+    }
+
+    /**
+     * Reparse only the innermost parenthesized expression of the statement whose inner
+     * tokens include the old tokens [first, oldEnd).
+     * @return false if there is no such expression or its new tokens no longer parse
+     *  to exactly one expression.
+     */
+    private boolean reparseGrouping(Statement statement, int first, int oldEnd, int tokenDelta) {
+        if (statement.expr == null
+                || first < statement.start || oldEnd > statement.start + sizes.get(statement.expr)) {
+            return false;
+        }
+        if (statement.lineShift != 0) {
+            statement.expr = moveLines(statement.expr, statement.lineShift);
+            statement.lineShift = 0;
+        }
+
+        // Walk down to the innermost node that contains all the changed tokens.
+        List<Expr> path = new ArrayList<>();
+        int grouping = -1;
+        int groupingStart = 0;
+        Expr node = statement.expr;
+        int start = statement.start;
+        while (true) {
+            path.add(node);
+            if (node instanceof Expr.Grouping) {
+                Expr inner = ((Expr.Grouping) node).expression;
+                if (first < start + 1 || oldEnd > start + 1 + sizes.get(inner)) {
+                    break;
+                }
+                grouping = path.size() - 1;
+                groupingStart = start;
+                node = inner;
+                start++;
+            } else if (node instanceof Expr.Unary) {
+                if (first < start + 1) {
+                    break;
+                }
+                node = ((Expr.Unary) node).right;
+                start++;
+            } else if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                int leftSize = sizes.get(binary.left);
+                if (oldEnd <= start + leftSize) {
+                    node = binary.left;
+                } else if (first > start + leftSize) {
+                    node = binary.right;
+                    start += leftSize + 1;
+                } else {
+                    break;
+                }
+            } else {
+                break;
+            }
+        }
+        if (grouping < 0) {
+            return false;
+        }
+
+        Expr.Grouping old = (Expr.Grouping) path.get(grouping);
+        int innerStart = groupingStart + 1;
+        int innerEnd = innerStart + sizes.get(old.expression) + tokenDelta;
+        Expr inner = new Parser(tokens, new Diagnostics()).parseSpan(innerStart, innerEnd);
+        if (inner == null) {
+            return false;
+        }
+        reparsed = innerEnd - innerStart;
+
+        // Copy the nodes on the path to the new expression; their other children stay.
+        forget(old);
+        Expr replacement = new Expr.Grouping(inner);
+        sizes.put(replacement, measure(inner) + 2);
+        for (int i = grouping - 1; i >= 0; i--) {
+            Expr parent = path.get(i);
+            Expr child = path.get(i + 1);
+            Expr copy;
+            if (parent instanceof Expr.Grouping) {
+                copy = new Expr.Grouping(replacement);
+            } else if (parent instanceof Expr.Unary) {
+                copy = new Expr.Unary(((Expr.Unary) parent).operator, replacement);
+            } else {
+                Expr.Binary binary = (Expr.Binary) parent;
+                copy = binary.left == child
+                        ? new Expr.Binary(replacement, binary.operator, binary.right)
+                        : new Expr.Binary(binary.left, binary.operator, replacement);
+            }
+            sizes.put(copy, sizes.remove(parent) + tokenDelta);
+            replacement = copy;
+        }
+        statement.expr = replacement;
+        statement.end += tokenDelta;
+        return true;
+    }
+
+    /**
+     * Record the number of tokens of every node of a new tree.
+     * @return The number of tokens of the root.
+     */
+    private int measure(Expr root) {
+        for (Expr node : postorder(root)) {
+            int size;
+            if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                size = sizes.get(binary.left) + 1 + sizes.get(binary.right);
+            } else if (node instanceof Expr.Grouping) {
+                size = sizes.get(((Expr.Grouping) node).expression) + 2;
+            } else if (node instanceof Expr.Unary) {
+                size = 1 + sizes.get(((Expr.Unary) node).right);
+            } else {
+                size = 1;
+            }
+            sizes.put(node, size);
+        }
+        return sizes.get(root);
+    }
+
+    private void forget(Expr root) {
+        for (Expr node : postorder(root)) {
+            sizes.remove(node);
+        }
+    }
+
+    /**
+     * Copy a tree, moving the tokens of its operators and variables by a number of
+     * lines.
+     */
+    private Expr moveLines(Expr root, int lines) {
+        Map<Expr, Expr> copies = new IdentityHashMap<>();
+        for (Expr node : postorder(root)) {
+            Expr copy;
+            if (node instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) node;
+                copy = new Expr.Binary(copies.get(binary.left), moveLines(binary.operator, lines),
+                        copies.get(binary.right));
+            } else if (node instanceof Expr.Grouping) {
+                copy = new Expr.Grouping(copies.get(((Expr.Grouping) node).expression));
+            } else if (node instanceof Expr.Unary) {
+                Expr.Unary unary = (Expr.Unary) node;
+                copy = new Expr.Unary(moveLines(unary.operator, lines), copies.get(unary.right));
+            } else if (node instanceof Expr.Variable) {
+                copy = new Expr.Variable(moveLines(((Expr.Variable) node).name, lines));
+            } else {
+                copy = node;
+            }
+            copies.put(node, copy);
+            sizes.put(copy, sizes.remove(node));
+        }
+        return copies.get(root);
+    }
+
+    private static Token moveLines(Token token, int lines) {
+        return new Token(token.type, token.lexeme, token.literal, token.line + lines);
+    }
+
+    /**
+     * @return The nodes of a tree with every node after its children.
+     */
+    private static List<Expr> postorder(Expr root) {
+        Deque<Expr> pending = new ArrayDeque<>();
+        List<Expr> order = new ArrayList<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Expr node = pending.pop();
+            order.add(node);
+            if (node instanceof Expr.Binary) {
+                pending.push(((Expr.Binary) node).left);
+                pending.push(((Expr.Binary) node).right);
+            } else if (node instanceof Expr.Grouping) {
+                pending.push(((Expr.Grouping) node).expression);
+            } else if (node instanceof Expr.Unary) {
+                pending.push(((Expr.Unary) node).right);
+            }
+        }
+        // Parents were added before their children.
+        Collections.reverse(order);
+        return order;
+    }
+
+    private static int newlines(CharSequence text, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,227 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public abstract class Expr {
+    static final int BINARY = 0;
+    static final int GROUPING = 1;
+    static final int LITERAL = 2;
+    static final int UNARY = 3;
+    static final int VARIABLE = 4;
+
+    interface Visitor<R> {
+        R visitBinaryExpr(Binary expr);
+        R visitGroupingExpr(Grouping expr);
+        R visitLiteralExpr(Literal expr);
+        R visitUnaryExpr(Unary expr);
+        R visitVariableExpr(Variable expr);
+    }
+
+    final int kind;
+
+    Expr(int kind) {
+        this.kind = kind;
+    }
+
+    abstract <R> R accept(Visitor<R> visitor);
+
+    /**
+     * Trees are equal if they have the same shape, operators and literal values,
+     * whichever lines they were parsed from. Subtrees still to compare are kept on
+     * an explicit stack, so deep trees cannot overflow the call stack.
+     */
+    @Override
+    public final boolean equals(Object object) {
+        if (!(object instanceof Expr)) {
+            return false;
+        }
+        List<Expr> pending = new ArrayList<>();
+        pending.add(this);
+        pending.add((Expr) object);
+        while (!pending.isEmpty()) {
+            Expr b = pending.remove(pending.size() - 1);
+            Expr a = pending.remove(pending.size() - 1);
+            if (a != b && (a.kind != b.kind || !a.fieldsEqual(b, pending))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public final int hashCode() {
+        int hash = 1;
+        List<Expr> pending = new ArrayList<>();
+        pending.add(this);
+        while (!pending.isEmpty()) {
+            hash = 31 * hash + pending.remove(pending.size() - 1).fieldsHash(pending);
+        }
+        return hash;
+    }
+
+    /**
+     * Compare the fields of a node of the same kind, adding pairs of subtrees to
+     * pending instead of comparing them.
+     */
+    abstract boolean fieldsEqual(Expr other, List<Expr> pending);
+
+    /**
+     * Hash the kind and fields of a node, adding subtrees to pending instead of
+     * hashing them.
+     */
+    abstract int fieldsHash(List<Expr> pending);
+
+    // Tokens match by type and text; their lines do not matter.
+    static boolean sameToken(Token a, Token b) {
+        return a.type == b.type && Objects.equals(a.lexeme, b.lexeme);
+    }
+
+    static int tokenHash(Token token) {
+        return 31 * token.type.ordinal() + Objects.hashCode(token.lexeme);
+    }
+
+    public static final class Binary extends Expr {
+        final Expr left;
+        final Token operator;
+        final Expr right;
+
+        Binary(Expr left, Token operator, Expr right) {
+            super(BINARY);
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBinaryExpr(this);
+        }
+
+        @Override
+        boolean fieldsEqual(Expr other, List<Expr> pending) {
+            Binary that = (Binary) other;
+            pending.add(left);
+            pending.add(that.left);
+            pending.add(right);
+            pending.add(that.right);
+            return sameToken(operator, that.operator);
+        }
+
+        @Override
+        int fieldsHash(List<Expr> pending) {
+            pending.add(left);
+            pending.add(right);
+            return 31 * BINARY + tokenHash(operator);
+        }
+    }
+
+    public static final class Grouping extends Expr {
+        final Expr expression;
+
+        Grouping(Expr expression) {
+            super(GROUPING);
+            this.expression = expression;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitGroupingExpr(this);
+        }
+
+        @Override
+        boolean fieldsEqual(Expr other, List<Expr> pending) {
+            Grouping that = (Grouping) other;
+            pending.add(expression);
+            pending.add(that.expression);
+            return true;
+        }
+
+        @Override
+        int fieldsHash(List<Expr> pending) {
+            pending.add(expression);
+            return GROUPING;
+        }
+    }
+
+    public static final class Literal extends Expr {
+        final Object value;
+
+        Literal(Object value) {
+            super(LITERAL);
+            this.value = value;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitLiteralExpr(this);
+        }
+
+        @Override
+        boolean fieldsEqual(Expr other, List<Expr> pending) {
+            Literal that = (Literal) other;
+            return Objects.equals(value, that.value);
+        }
+
+        @Override
+        int fieldsHash(List<Expr> pending) {
+            return 31 * LITERAL + Objects.hashCode(value);
+        }
+    }
+
+    public static final class Unary extends Expr {
+        final Token operator;
+        final Expr right;
+
+        Unary(Token operator, Expr right) {
+            super(UNARY);
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitUnaryExpr(this);
+        }
+
+        @Override
+        boolean fieldsEqual(Expr other, List<Expr> pending) {
+            Unary that = (Unary) other;
+            pending.add(right);
+            pending.add(that.right);
+            return sameToken(operator, that.operator);
+        }
+
+        @Override
+        int fieldsHash(List<Expr> pending) {
+            pending.add(right);
+            return 31 * UNARY + tokenHash(operator);
+        }
+    }
+
+    public static final class Variable extends Expr {
+        final Token name;
+
+        Variable(Token name) {
+            super(VARIABLE);
+            this.name = name;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitVariableExpr(this);
+        }
+
+        @Override
+        boolean fieldsEqual(Expr other, List<Expr> pending) {
+            Variable that = (Variable) other;
+            return sameToken(name, that.name);
+        }
+
+        @Override
+        int fieldsHash(List<Expr> pending) {
+            return 31 * VARIABLE + tokenHash(name);
+        }
+    }
+}
@@ -0,0 +1,602 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Interpreter implements Expr.Visitor<Object> {
+    private static final int COMPILE_THRESHOLD = 1000;
+    // Large enough to spread the walk over many rows, small enough for the chunk
+    // arrays of a tree to stay in cache.
+    private static final int BATCH_CHUNK = 1024;
+    // Kept for a root that JvmCompiler could not compile.
+    private static final Object NOT_COMPILED = new Object();
+
+    // Evaluations of a root before it is compiled, or 0 to never compile.
+    private final int compileThreshold;
+    // What is known about each root evaluated, for as long as the tree is reachable.
+    private final WeakIdentityMap<Expr, Root> roots = new WeakIdentityMap<>();
+
+    /**
+     * How often a root has been evaluated, and its compiled form once it has been
+     * evaluated often enough.
+     */
+    private static final class Root {
+        final AtomicInteger evaluations = new AtomicInteger();
+        // The CompiledExpr, or NOT_COMPILED if the tree cannot be compiled.
+        volatile Object compiled;
+    }
+
+    public Interpreter() {
+        this(COMPILE_THRESHOLD);
+    }
+
+    Interpreter(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+    }
+
+    /**
+     * Evaluate an expression, reporting a runtime error to the given diagnostics.
+     * The interpreter keeps no per-run state, so one instance can serve many
+     * concurrent runs. A root evaluated often enough is compiled to bytecode and
+     * runs compiled from then on, unless it could fail at runtime.
+     * @return The value of the expression, or null if evaluation failed.
+     */
+    Object interpret(Expr expression, Diagnostics diagnostics) {
+        CompiledExpr compiled = compiled(expression);
+        if (compiled != null) {
+            return compiled.evaluate();
+        }
+        try {
+            return evaluate(expression);
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    /**
+     * Evaluate an expression like interpret() does, but without recursing, so
+     * arbitrarily deep trees cannot overflow the stack. Nodes waiting for their
+     * operands and the values computed so far are kept on explicit stacks.
+     * @return The value of the expression, or null if evaluation failed.
+     */
+    Object interpretIterative(Expr expression, Diagnostics diagnostics) {
+        // Compiled code does not recurse either.
+        CompiledExpr compiled = compiled(expression);
+        if (compiled != null) {
+            return compiled.evaluate();
+        }
+        try {
+            return evaluateIterative(expression);
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    /**
+     * Count an evaluation of a root, and compile it once it has been evaluated
+     * compileThreshold times. The count and the compiled class are kept in a side
+     * table rather than on the tree, so they live exactly as long as the tree.
+     * Concurrent evaluations share one count and exactly one of them compiles; the
+     * others keep walking the tree until the compiled class is published.
+     *
+     * Nothing is kept for a root JvmCompiler.mayCompile() rules out, which is most
+     * of them: the Optimizer folds every tree the compiler takes down to a single
+     * literal, so roots on the default path never reach the compiler. Only trees
+     * that skip the Optimizer, on the stack-safe path, get counted and compiled.
+     * @return The compiled tree, or null to walk it.
+     */
+    private CompiledExpr compiled(Expr root) {
+        if (compileThreshold == 0) {
+            return null;
+        }
+        Root state = roots.get(root);
+        if (state == null) {
+            if (!JvmCompiler.mayCompile(root)) {
+                return null;
+            }
+            state = roots.computeIfAbsent(root, expr -> new Root());
+        }
+        Object compiled = state.compiled;
+        if (compiled != null) {
+            return compiled == NOT_COMPILED ? null : (CompiledExpr) compiled;
+        }
+        if (state.evaluations.incrementAndGet() != compileThreshold) {
+            return null;
+        }
+        CompiledExpr result = JvmCompiler.compile(root);
+        state.compiled = result != null ? result : NOT_COMPILED;
+        return result;
+    }
+
+    // Marks a slot of the compact evaluation stack whose value is in the number stack.
+    private static final Object NUMBER = new Object();
+
+    /**
+     * Evaluate a compact tree to the same value, or the same error, as interpret()
+     * evaluates the equivalent Expr tree. The nodes are in postorder, so one pass
+     * over them in index order with a stack of operand values evaluates the tree
+     * without recursing. Numbers stay unboxed on a separate stack. An error is kept
+     * on the stack in place of a value and passed on to the root, so the error
+     * reported is the one the tree walker would have stopped at.
+     * @return The value of the expression, or null if evaluation failed.
+     */
+    Object interpret(CompactAst ast, Diagnostics diagnostics) {
+        double[] numbers = new double[16];
+        Object[] values = new Object[16];
+        int top = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            switch (ast.kind(node)) {
+                case CompactAst.LITERAL: {
+                    if (top == values.length) {
+                        numbers = Arrays.copyOf(numbers, top * 2);
+                        values = Arrays.copyOf(values, top * 2);
+                    }
+                    Object value = ast.value(node);
+                    if (value instanceof Double) {
+                        numbers[top] = (double) value;
+                        values[top++] = NUMBER;
+                    } else {
+                        values[top++] = value;
+                    }
+                    break;
+                }
+                case CompactAst.VARIABLE:
+                    if (top == values.length) {
+                        numbers = Arrays.copyOf(numbers, top * 2);
+                        values = Arrays.copyOf(values, top * 2);
+                    }
+                    values[top++] = undefined(ast.nameToken(node));
+                    break;
+                case CompactAst.UNARY: {
+                    Object operand = values[top - 1];
+                    if (operand instanceof RuntimeError) {
+                        break;
+                    }
+                    if (ast.operator(node) == TokenType.BANG) {
+                        values[top - 1] = operand != NUMBER && !isTruthy(operand);
+                    } else if (operand == NUMBER) {
+                        numbers[top - 1] = -numbers[top - 1];
+                    } else {
+                        values[top - 1] = new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+                    }
+                    break;
+                }
+                case CompactAst.BINARY: {
+                    top--;
+                    Object left = values[top - 1];
+                    Object right = values[top];
+                    if (left instanceof RuntimeError) {
+                        break;
+                    }
+                    values[top - 1] = applyBinary(ast, node, left, numbers[top - 1], right, numbers[top]);
+                    if (values[top - 1] == NUMBER) {
+                        numbers[top - 1] = applyArithmetic(ast.operator(node), numbers[top - 1], numbers[top]);
+                    }
+                    break;
+                }
+                // A grouping has the value of its operand, which is already on the stack.
+            }
+        }
+        if (values[0] instanceof RuntimeError) {
+            diagnostics.runtimeError((RuntimeError) values[0]);
+            return null;
+        }
+        return values[0] == NUMBER ? (Object) numbers[0] : values[0];
+    }
+
+    /**
+     * Evaluate an expression once for every row of a table of numbers, binding each
+     * variable to the column of that name. The tree is walked once per chunk of rows
+     * instead of once per row; see BatchEvaluator. Booleans are 1 and 0 in the result.
+     * A runtime error would be the same for every row, so it is reported once, and
+     * not at all if there are no rows.
+     * @param columns Values of each variable by name, with at least rows values each.
+     * @return The value of the expression for each row, or null if evaluation failed.
+     * @throws IllegalArgumentException if the expression has a string or nil, which
+     *  a column of numbers cannot hold.
+     */
+    public double[] interpretBatch(Expr expression, Map<String, double[]> columns, int rows,
+                                   Diagnostics diagnostics) {
+        return interpretBatch(CompactAst.of(expression), columns, rows, diagnostics);
+    }
+
+    public double[] interpretBatch(CompactAst ast, Map<String, double[]> columns, int rows,
+                                   Diagnostics diagnostics) {
+        return interpretBatch(ast, columns, rows, BATCH_CHUNK, diagnostics);
+    }
+
+    /**
+     * @param chunk Rows evaluated per walk of the tree.
+     */
+    double[] interpretBatch(CompactAst ast, Map<String, double[]> columns, int rows, int chunk,
+                            Diagnostics diagnostics) {
+        try {
+            return BatchEvaluator.evaluate(ast, columns, rows, chunk);
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    /**
+     * Apply a binary operator of a compact tree to operand values from the
+     * evaluation stack, either of which may be NUMBER with its value alongside.
+     * @return The result, NUMBER if it is an arithmetic result still to be
+     *  computed, or the error to report.
+     */
+    private Object applyBinary(CompactAst ast, int node, Object left, double a, Object right, double b) {
+        TokenType operator = ast.operator(node);
+        switch (operator) {
+            case BANG_EQUAL:
+            case EQUAL_EQUAL: {
+                if (right instanceof RuntimeError) {
+                    return right;
+                }
+                boolean equal = left == NUMBER || right == NUMBER
+                        ? left == right && Double.doubleToLongBits(a) == Double.doubleToLongBits(b)
+                        : isEqual(left, right);
+                return operator == TokenType.EQUAL_EQUAL ? equal : !equal;
+            }
+            case PLUS:
+                if (right instanceof RuntimeError) {
+                    return right;
+                }
+                if (left == NUMBER && right == NUMBER) {
+                    return NUMBER;
+                }
+                if (left instanceof CharSequence && right instanceof CharSequence) {
+                    return Rope.concat((CharSequence) left, (CharSequence) right);
+                }
+                return new RuntimeError(ast.operatorToken(node), "Operands must be two numbers or two strings.");
+        }
+        // Like the tree walker, the left operand is rejected before the right one.
+        if (left != NUMBER) {
+            return new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+        }
+        if (right instanceof RuntimeError) {
+            return right;
+        }
+        if (right != NUMBER) {
+            return new RuntimeError(ast.operatorToken(node), "Operand must be a number.");
+        }
+        switch (operator) {
+            case GREATER: return a > b;
+            case GREATER_EQUAL: return a >= b;
+            case LESS: return a < b;
+            case LESS_EQUAL: return a <= b;
+        }
+        return NUMBER;
+    }
+
+    private static double applyArithmetic(TokenType operator, double a, double b) {
+        switch (operator) {
+            case PLUS: return a + b;
+            case MINUS: return a - b;
+            case SLASH: return a / b;
+            case STAR: return a * b;
+        }
+        // Unreachable.
+        return 0;
+    }
+
+    // Stages of a node on the iterative work stack.
+    private static final int SCHEDULE = 0;
+    private static final int LEFT_DONE = 1;
+    private static final int APPLY = 2;
+
+    private Object evaluateIterative(Expr root) {
+        // A node is revisited after each of its operands has been evaluated; the
+        // stage says how far it has got.
+        List<Expr> work = new ArrayList<>();
+        List<Integer> stages = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        work.add(root);
+        stages.add(SCHEDULE);
+
+        while (!work.isEmpty()) {
+            Expr expr = work.remove(work.size() - 1);
+            int stage = stages.remove(stages.size() - 1);
+
+            switch (expr.kind) {
+                case Expr.LITERAL:
+                    values.add(((Expr.Literal) expr).value);
+                    break;
+                case Expr.GROUPING:
+                    // The grouping's value is its operand's value.
+                    work.add(((Expr.Grouping) expr).expression);
+                    stages.add(SCHEDULE);
+                    break;
+                case Expr.VARIABLE:
+                    throw undefined(((Expr.Variable) expr).name);
+                case Expr.UNARY: {
+                    Expr.Unary unary = (Expr.Unary) expr;
+                    if (stage == SCHEDULE) {
+                        work.add(unary);
+                        stages.add(APPLY);
+                        work.add(unary.right);
+                        stages.add(SCHEDULE);
+                    } else {
+                        Object right = values.remove(values.size() - 1);
+                        values.add(applyUnary(unary.operator, right));
+                    }
+                    break;
+                }
+                default: {
+                    Expr.Binary binary = (Expr.Binary) expr;
+                    if (stage == SCHEDULE) {
+                        work.add(binary);
+                        stages.add(LEFT_DONE);
+                        work.add(binary.left);
+                        stages.add(SCHEDULE);
+                    } else if (stage == LEFT_DONE) {
+                        // Like the visitor, a numeric operator rejects its left operand
+                        // before the right one is evaluated.
+                        if (isNumericOperator(binary.operator)) {
+                            checkNumberOperand(binary.operator, values.get(values.size() - 1));
+                        }
+                        work.add(binary);
+                        stages.add(APPLY);
+                        work.add(binary.right);
+                        stages.add(SCHEDULE);
+                    } else {
+                        Object right = values.remove(values.size() - 1);
+                        Object left = values.remove(values.size() - 1);
+                        values.add(applyBinary(binary.operator, left, right));
+                    }
+                }
+            }
+        }
+        return values.get(0);
+    }
+
+    private static boolean isNumericOperator(Token operator) {
+        switch (operator.type) {
+            case MINUS:
+            case SLASH:
+            case STAR:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public Object visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            // Operators that only accept numbers never need the boxed operands,
+            // so both sides are evaluated straight to primitive doubles.
+            case MINUS:
+            case SLASH:
+            case STAR:
+                return evaluateDouble(expr);
+            case GREATER:
+                return evaluateDouble(expr.left, expr.operator) > evaluateDouble(expr.right, expr.operator);
+            case GREATER_EQUAL:
+                return evaluateDouble(expr.left, expr.operator) >= evaluateDouble(expr.right, expr.operator);
+            case LESS:
+                return evaluateDouble(expr.left, expr.operator) < evaluateDouble(expr.right, expr.operator);
+            case LESS_EQUAL:
+                return evaluateDouble(expr.left, expr.operator) <= evaluateDouble(expr.right, expr.operator);
+        }
+
+        Object left = evaluate(expr.left);
+        Object right = evaluate(expr.right);
+        return applyBinary(expr.operator, left, right);
+    }
+
+    @Override
+    public Object visitGroupingExpr(Expr.Grouping expr) {
+        return evaluate(expr.expression);
+    }
+
+    @Override
+    public Object visitLiteralExpr(Expr.Literal expr) {
+        return expr.value;
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expr) {
+        throw undefined(expr.name);
+    }
+
+    /**
+     * Nothing defines variables yet, so every variable is undefined outside of
+     * interpretBatch().
+     */
+    private static RuntimeError undefined(Token name) {
+        return new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public Object visitUnaryExpr(Expr.Unary expr) {
+        switch (expr.operator.type) {
+            case BANG:
+                return !isTruthy(evaluate(expr.right));
+            case MINUS:
+                return evaluateDouble(expr);
+        }
+
+        // Unreachable.
+        return null;
+    }
+
+    /**
+     * Apply a binary operator to the values of its operands.
+     */
+    private Object applyBinary(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case BANG_EQUAL: return !isEqual(left, right);
+            case EQUAL_EQUAL: return isEqual(left, right);
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return (double) left + (double) right;
+                }
+                if (left instanceof CharSequence && right instanceof CharSequence) {
+                    return Rope.concat((CharSequence) left, (CharSequence) right);
+                }
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+        }
+
+        checkNumberOperand(operator, left);
+        checkNumberOperand(operator, right);
+        double a = (double) left;
+        double b = (double) right;
+        switch (operator.type) {
+            case MINUS: return a - b;
+            case SLASH: return a / b;
+            case STAR: return a * b;
+            case GREATER: return a > b;
+            case GREATER_EQUAL: return a >= b;
+            case LESS: return a < b;
+            case LESS_EQUAL: return a <= b;
+        }
+
+        // Unreachable.
+        return null;
+    }
+
+    /**
+     * Apply a unary operator to the value of its operand.
+     */
+    private Object applyUnary(Token operator, Object right) {
+        if (operator.type == TokenType.BANG) {
+            return !isTruthy(right);
+        }
+        checkNumberOperand(operator, right);
+        return -(double) right;
+    }
+
+    /**
+     * Dispatch on the node's kind rather than through accept(), so each step of the
+     * walk is one table switch instead of two virtual calls.
+     */
+    private Object evaluate(Expr expr) {
+        switch (expr.kind) {
+            case Expr.BINARY: return visitBinaryExpr((Expr.Binary) expr);
+            case Expr.GROUPING: return visitGroupingExpr((Expr.Grouping) expr);
+            case Expr.LITERAL: return ((Expr.Literal) expr).value;
+            case Expr.UNARY: return visitUnaryExpr((Expr.Unary) expr);
+            default: return visitVariableExpr((Expr.Variable) expr);
+        }
+    }
+
+    /**
+     * Evaluate an expression whose result the caller needs as a number.
+     * Numeric literals, negation and the purely arithmetic operators are computed
+     * on primitive doubles, so a subtree like (1 - 2) * -3 allocates no intermediate
+     * Double. Any other node goes through the generic visitor and is unboxed.
+     * @param expr Expression to evaluate.
+     * @param operator Operator that needs the number, used to report a type error.
+     * @return The numeric value of the expression.
+     */
+    private double evaluateDouble(Expr expr, Token operator) {
+        switch (expr.kind) {
+            case Expr.LITERAL: {
+                Object value = ((Expr.Literal) expr).value;
+                if (value instanceof Double) {
+                    return (double) value;
+                }
+                break;
+            }
+            case Expr.GROUPING:
+                return evaluateDouble(((Expr.Grouping) expr).expression, operator);
+            case Expr.UNARY: {
+                Expr.Unary unary = (Expr.Unary) expr;
+                if (unary.operator.type == TokenType.MINUS) {
+                    return evaluateDouble(unary);
+                }
+                break;
+            }
+            case Expr.BINARY: {
+                Expr.Binary binary = (Expr.Binary) expr;
+                switch (binary.operator.type) {
+                    case MINUS:
+                    case SLASH:
+                    case STAR:
+                        return evaluateDouble(binary);
+                }
+                break;
+            }
+        }
+
+        Object value = evaluate(expr);
+        checkNumberOperand(operator, value);
+        return (double) value;
+    }
+
+    private double evaluateDouble(Expr.Unary expr) {
+        return -evaluateDouble(expr.right, expr.operator);
+    }
+
+    private double evaluateDouble(Expr.Binary expr) {
+        double left = evaluateDouble(expr.left, expr.operator);
+        double right = evaluateDouble(expr.right, expr.operator);
+
+        switch (expr.operator.type) {
+            case MINUS: return left - right;
+            case SLASH: return left / right;
+            case STAR: return left * right;
+        }
+
+        // Unreachable.
+        return 0;
+    }
+
+    private void checkNumberOperand(Token operator, Object operand) {
+        if (operand instanceof Double) {
+            return;
+        }
+        throw new RuntimeError(operator, "Operand must be a number.");
+    }
+
+    /**
+     * false and nil are falsey, everything else is truthy.
+     */
+    private boolean isTruthy(Object object) {
+        if (object == null) {
+            return false;
+        }
+        if (object instanceof Boolean) {
+            return (boolean) object;
+        }
+        return true;
+    }
+
+    private boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) {
+            return true;
+        }
+        if (a == null) {
+            return false;
+        }
+        // A string may be a String or a Rope; either way compare the text.
+        if (a instanceof CharSequence && b instanceof CharSequence) {
+            return a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
+
+    static String stringify(Object object) {
+        if (object == null) {
+            return "nil";
+        }
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+        return object.toString();
+    }
+}
@@ -0,0 +1,462 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles an expression tree into a hidden class whose evaluate() method computes
+ * the whole tree as straight-line bytecode, which HotSpot then optimizes like any
+ * other method instead of walking the tree node by node.
+ *
+ * Only trees whose operand types are known while compiling and which cannot fail
+ * are compiled: numbers and booleans combined by operators that accept them.
+ * Strings, nil and anything the tree walker would report as a type error are left
+ * to the tree walker. Comparisons turn the result of dcmpl/dcmpg into 0 or 1 with
+ * arithmetic instead of branching, so the method has no branches and the class
+ * file needs no stack map frames.
+ */
+final class JvmCompiler {
+    // Larger trees would recurse deeply here and rarely fit in MAX_CODE_LENGTH.
+    private static final int MAX_NODES = 2000;
+    // HotSpot does not JIT-compile methods with more bytecode than this.
+    private static final int MAX_CODE_LENGTH = 8000;
+
+    // Static types of compiled values.
+    private static final int FAILED = -1;
+    // A double, two stack slots.
+    private static final int NUMBER = 0;
+    // An int, 0 or 1.
+    private static final int BOOLEAN = 1;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP = 0x59;
+    private static final int DADD = 0x63;
+    private static final int ISUB = 0x64;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int INEG = 0x74;
+    private static final int DNEG = 0x77;
+    private static final int IUSHR = 0x7c;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int LCMP = 0x94;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private int stack = 0;
+    private int maxStack = 0;
+
+    private JvmCompiler() {}
+
+    /**
+     * @return The compiled tree, or null if it cannot be compiled.
+     */
+    static CompiledExpr compile(Expr root) {
+        if (!mayCompile(root)) {
+            return null;
+        }
+        JvmCompiler compiler = new JvmCompiler();
+        int type = compiler.emit(root);
+        if (type == FAILED || compiler.code.size() > MAX_CODE_LENGTH) {
+            return null;
+        }
+        if (type == NUMBER) {
+            compiler.invokeStatic("java/lang/Double", "valueOf", "(D)Ljava/lang/Double;", -1);
+        } else {
+            compiler.invokeStatic("java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", 0);
+        }
+        compiler.op(ARETURN, -1);
+
+        try {
+            Class<?> compiled = MethodHandles.lookup().defineHiddenClass(compiler.classFile(), true).lookupClass();
+            return (CompiledExpr) compiled.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // A class the JVM rejects leaves the tree to the tree walker.
+            return null;
+        }
+    }
+
+    /**
+     * Cheap test, without recursing, for trees compile() certainly rejects or gains
+     * nothing on: a lone literal, a tree with nil, a string or a variable in it, or
+     * one with more than MAX_NODES nodes. Stops at the first such node found, so it
+     * never visits more nodes than evaluating the tree does. It lets callers keep
+     * no state for trees that will never compile.
+     * @return false if compile() would not return a useful class for the tree.
+     */
+    static boolean mayCompile(Expr root) {
+        if (root.kind == Expr.LITERAL) {
+            return false;
+        }
+        Expr[] work = new Expr[16];
+        int top = 0;
+        int size = 0;
+        work[top++] = root;
+        while (top > 0) {
+            if (++size > MAX_NODES) {
+                return false;
+            }
+            Expr expr = work[--top];
+            if (top + 2 > work.length) {
+                work = Arrays.copyOf(work, work.length * 2);
+            }
+            switch (expr.kind) {
+                case Expr.BINARY:
+                    work[top++] = ((Expr.Binary) expr).left;
+                    work[top++] = ((Expr.Binary) expr).right;
+                    break;
+                case Expr.GROUPING:
+                    work[top++] = ((Expr.Grouping) expr).expression;
+                    break;
+                case Expr.UNARY:
+                    work[top++] = ((Expr.Unary) expr).right;
+                    break;
+                case Expr.LITERAL: {
+                    Object value = ((Expr.Literal) expr).value;
+                    if (!(value instanceof Double) && !(value instanceof Boolean)) {
+                        return false;
+                    }
+                    break;
+                }
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Emit code that leaves the value of the expression on the stack.
+     * @return Static type of the value, or FAILED if the tree cannot be compiled.
+     */
+    private int emit(Expr expr) {
+        switch (expr.kind) {
+            case Expr.LITERAL:
+                return emitLiteral(((Expr.Literal) expr).value);
+            case Expr.GROUPING:
+                return emit(((Expr.Grouping) expr).expression);
+            case Expr.UNARY:
+                return emitUnary((Expr.Unary) expr);
+            case Expr.VARIABLE:
+                // Nothing defines variables yet, so reading one fails at runtime.
+                return FAILED;
+            default:
+                return emitBinary((Expr.Binary) expr);
+        }
+    }
+
+    private int emitLiteral(Object value) {
+        if (value instanceof Boolean) {
+            op((boolean) value ? ICONST_1 : ICONST_0, 1);
+            return BOOLEAN;
+        }
+        if (!(value instanceof Double)) {
+            return FAILED;
+        }
+        long bits = Double.doubleToRawLongBits((double) value);
+        if (bits == Double.doubleToRawLongBits(0.0)) {
+            op(DCONST_0, 2);
+        } else if (bits == Double.doubleToRawLongBits(1.0)) {
+            op(DCONST_1, 2);
+        } else {
+            op(LDC2_W, 2);
+            u2(code, pool.number((double) value));
+        }
+        return NUMBER;
+    }
+
+    private int emitUnary(Expr.Unary unary) {
+        int operand = emit(unary.right);
+        if (operand == FAILED) {
+            return FAILED;
+        }
+        if (unary.operator.type == TokenType.MINUS) {
+            // Negating anything but a number is a runtime error.
+            if (operand != NUMBER) {
+                return FAILED;
+            }
+            op(DNEG, 0);
+            return NUMBER;
+        }
+        if (operand == NUMBER) {
+            // Numbers are truthy.
+            op(POP2, -2);
+            op(ICONST_0, 1);
+        } else {
+            not();
+        }
+        return BOOLEAN;
+    }
+
+    private int emitBinary(Expr.Binary binary) {
+        TokenType operator = binary.operator.type;
+        boolean equality = operator == TokenType.EQUAL_EQUAL || operator == TokenType.BANG_EQUAL;
+
+        int left = emit(binary.left);
+        if (left == FAILED) {
+            return FAILED;
+        }
+        if (equality && left == NUMBER) {
+            // Lox compares numbers like Double.equals(), by their bits.
+            invokeStatic("java/lang/Double", "doubleToLongBits", "(D)J", 0);
+        }
+        int right = emit(binary.right);
+        if (right == FAILED) {
+            return FAILED;
+        }
+
+        if (equality) {
+            if (left != right) {
+                // A number never equals a boolean.
+                op(right == NUMBER ? POP2 : POP, right == NUMBER ? -2 : -1);
+                op(left == NUMBER ? POP2 : POP, left == NUMBER ? -2 : -1);
+                op(operator == TokenType.EQUAL_EQUAL ? ICONST_0 : ICONST_1, 1);
+                return BOOLEAN;
+            }
+            if (left == NUMBER) {
+                invokeStatic("java/lang/Double", "doubleToLongBits", "(D)J", 0);
+                op(LCMP, -3);
+            } else {
+                op(ISUB, -1);
+            }
+            // x is -1, 0 or 1; (x | -x) >>> 31 is 1 unless x is 0.
+            op(DUP, 1);
+            op(INEG, 0);
+            op(IOR, -1);
+            shiftSign();
+            if (operator == TokenType.EQUAL_EQUAL) {
+                not();
+            }
+            return BOOLEAN;
+        }
+
+        // Every other operator is a runtime error on anything but two numbers.
+        if (left != NUMBER || right != NUMBER) {
+            return FAILED;
+        }
+        switch (operator) {
+            case PLUS: op(DADD, -2); return NUMBER;
+            case MINUS: op(DSUB, -2); return NUMBER;
+            case STAR: op(DMUL, -2); return NUMBER;
+            case SLASH: op(DDIV, -2); return NUMBER;
+            // dcmpl gives -1 and dcmpg gives 1 if either operand is NaN, which makes
+            // every comparison false like it is in Java.
+            case GREATER:
+                // 1 if the comparison gives 1.
+                op(DCMPL, -3);
+                op(INEG, 0);
+                shiftSign();
+                return BOOLEAN;
+            case GREATER_EQUAL:
+                // 1 unless the comparison gives -1.
+                op(DCMPL, -3);
+                shiftSign();
+                not();
+                return BOOLEAN;
+            case LESS:
+                // 1 if the comparison gives -1.
+                op(DCMPG, -3);
+                shiftSign();
+                return BOOLEAN;
+            case LESS_EQUAL:
+                // 1 unless the comparison gives 1.
+                op(DCMPG, -3);
+                op(INEG, 0);
+                shiftSign();
+                not();
+                return BOOLEAN;
+            default:
+                return FAILED;
+        }
+    }
+
+    /**
+     * Replace an int with its sign bit, 1 if it is negative and 0 otherwise.
+     */
+    private void shiftSign() {
+        op(BIPUSH, 1);
+        code.write(31);
+        op(IUSHR, -1);
+    }
+
+    private void not() {
+        op(ICONST_1, 1);
+        op(IXOR, -1);
+    }
+
+    private void op(int opcode, int stackDelta) {
+        code.write(opcode);
+        stack += stackDelta;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void invokeStatic(String owner, String name, String descriptor, int stackDelta) {
+        op(INVOKESTATIC, stackDelta);
+        u2(code, pool.method(owner, name, descriptor));
+    }
+
+    /**
+     * Assemble a class implementing CompiledExpr whose evaluate() method runs the
+     * emitted code.
+     */
+    private byte[] classFile() {
+        int thisClass = pool.type("lox/CompiledTree");
+        int superClass = pool.type("java/lang/Object");
+        int compiledExpr = pool.type("lox/CompiledExpr");
+        int objectInit = pool.method("java/lang/Object", "<init>", "()V");
+        int init = pool.utf8("<init>");
+        int initDescriptor = pool.utf8("()V");
+        int evaluate = pool.utf8("evaluate");
+        int evaluateDescriptor = pool.utf8("()Ljava/lang/Object;");
+        int codeAttribute = pool.utf8("Code");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        u4(out, 0xcafebabe);
+        u2(out, 0);
+        // Java 17.
+        u2(out, 61);
+        u2(out, pool.count);
+        out.writeBytes(pool.bytes.toByteArray());
+        // ACC_FINAL | ACC_SUPER
+        u2(out, 0x0030);
+        u2(out, thisClass);
+        u2(out, superClass);
+        u2(out, 1);
+        u2(out, compiledExpr);
+        u2(out, 0);
+
+        u2(out, 2);
+        ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+        constructor.write(ALOAD_0);
+        constructor.write(INVOKESPECIAL);
+        u2(constructor, objectInit);
+        constructor.write(RETURN);
+        method(out, init, initDescriptor, codeAttribute, 1, constructor.toByteArray());
+        method(out, evaluate, evaluateDescriptor, codeAttribute, maxStack, code.toByteArray());
+
+        u2(out, 0);
+        return out.toByteArray();
+    }
+
+    private static void method(ByteArrayOutputStream out, int name, int descriptor, int codeAttribute,
+                               int maxStack, byte[] code) {
+        // ACC_PUBLIC
+        u2(out, 0x0001);
+        u2(out, name);
+        u2(out, descriptor);
+        u2(out, 1);
+        u2(out, codeAttribute);
+        u4(out, 12 + code.length);
+        u2(out, maxStack);
+        // Only "this".
+        u2(out, 1);
+        u4(out, code.length);
+        out.writeBytes(code);
+        // No exception handlers and no attributes.
+        u2(out, 0);
+        u2(out, 0);
+    }
+
+    private static void u2(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void u4(ByteArrayOutputStream out, int value) {
+        u2(out, value >>> 16);
+        u2(out, value);
+    }
+
+    /**
+     * Constant pool of the class being compiled, each entry added once.
+     */
+    private static class ConstantPool {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // Index of the next entry; entry 0 does not exist.
+        int count = 1;
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        int utf8(String value) {
+            Integer index = indices.get("Utf8 " + value);
+            if (index != null) {
+                return index;
+            }
+            // Only ASCII names are used, which modified UTF-8 encodes as is.
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            bytes.write(1);
+            u2(bytes, encoded.length);
+            bytes.writeBytes(encoded);
+            return add("Utf8 " + value, 1);
+        }
+
+        int type(String name) {
+            Integer index = indices.get("Class " + name);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            bytes.write(7);
+            u2(bytes, nameIndex);
+            return add("Class " + name, 1);
+        }
+
+        int method(String owner, String name, String descriptor) {
+            String key = "Method " + owner + "." + name + descriptor;
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerIndex = type(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            bytes.write(12);
+            u2(bytes, nameIndex);
+            u2(bytes, descriptorIndex);
+            int nameAndType = count++;
+            bytes.write(10);
+            u2(bytes, ownerIndex);
+            u2(bytes, nameAndType);
+            return add(key, 1);
+        }
+
+        int number(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            String key = "Double " + bits;
+            Integer index = indices.get(key);
+            if (index != null) {
+                return index;
+            }
+            bytes.write(6);
+            u4(bytes, (int) (bits >>> 32));
+            u4(bytes, (int) bits);
+            // A double takes two entries.
+            return add(key, 2);
+        }
+
+        private int add(String key, int entries) {
+            int index = count;
+            indices.put(key, index);
+            count += entries;
+            return index;
+        }
+    }
+}
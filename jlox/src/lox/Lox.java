@@ -0,0 +1,463 @@
+package lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Press Shift twice to open the Search Everywhere dialog and type `show whitespaces`,
+// then press Enter. You can now see whitespace characters in your code.
+public class Lox {
+    // Only keeps what it has compiled, so every run can share it.
+    private static final Interpreter interpreter = new Interpreter();
+    // A VM reuses its stack between runs but cannot be shared, e.g. by --batch.
+    private static final ThreadLocal<VM> vm = ThreadLocal.withInitial(VM::new);
+    // Bytecode of the trees run with --vm, e.g. ones reused from an AstCache.
+    private static final WeakIdentityMap<Expr, Chunk> chunks = new WeakIdentityMap<>();
+    // Kept for a tree that does not fit in a chunk, which the tree walker runs instead.
+    private static final Chunk NOT_COMPILED = new Chunk();
+    // Parse, print and evaluate without recursion so deeply nested input cannot
+    // overflow the stack.
+    private static boolean stackSafe = false;
+    // Parser and evaluator chosen on the command line.
+    private static RunOptions options = RunOptions.DEFAULT;
+    // Parse into a CompactAst and print and evaluate that instead of an Expr tree.
+    private static boolean compact = false;
+    // Load scripts from their snapshot when it is up to date, and write one when not.
+    private static boolean snapshot = false;
+    // Print what each phase of a run cost to stderr as JSON.
+    private static boolean showStats = false;
+    // Do not echo the source before its results.
+    private static boolean quiet = false;
+    static boolean hadError = false;
+    static boolean hadRuntimeError = false;
+
+    public static void main(String[] args) throws IOException {
+        List<String> operands = new ArrayList<>();
+        boolean useVm = false;
+        boolean pratt = false;
+        for (String arg : args) {
+            if (arg.equals("--vm")) {
+                useVm = true;
+            } else if (arg.equals("--stack-safe")) {
+                stackSafe = true;
+            } else if (arg.equals("--pratt")) {
+                pratt = true;
+            } else if (arg.equals("--compact")) {
+                compact = true;
+            } else if (arg.equals("--snapshot")) {
+                snapshot = true;
+            } else if (arg.equals("--stats")) {
+                showStats = true;
+            } else if (arg.equals("--quiet")) {
+                quiet = true;
+            } else {
+                operands.add(arg);
+            }
+        }
+        Parser.Strategy strategy = Parser.Strategy.RECURSIVE_DESCENT;
+        if (stackSafe) {
+            strategy = Parser.Strategy.ITERATIVE;
+        } else if (pratt) {
+            strategy = Parser.Strategy.PRATT;
+        }
+        options = new RunOptions(strategy, useVm);
+
+        try {
+            if (operands.size() == 2 && (operands.get(0).equals("--batch") || operands.get(0).equals("--check"))) {
+                runBatch(operands.get(1), operands.get(0).equals("--batch"));
+            } else if (operands.size() > 1) {
+                ConsoleOutput.out.println("Usage: jlox [--vm] [--stack-safe] [--pratt] [--compact] [--snapshot] [--stats] [--quiet] [script | - | --batch <dir | manifest> | --check <dir | manifest>]");
+                ConsoleOutput.exit(64);
+            } else if (operands.size() == 1 && operands.get(0).equals("-")) {
+                runStream();
+            } else if (operands.size() == 1) {
+                runFile(operands.get(0));
+            } else {
+                runPrompt();
+            }
+        } finally {
+            ConsoleOutput.flush();
+        }
+    }
+
+    private static void runFile(String path) throws IOException {
+        CharSequence source = SourceFile.map(Paths.get(path));
+        if (snapshot) {
+            runSnapshot(Paths.get(path), source);
+        } else {
+            run(source);
+        }
+
+        if (hadError) {
+            ConsoleOutput.exit(65);
+        }
+        if (hadRuntimeError) {
+            ConsoleOutput.exit(70);
+        }
+    }
+
+    /**
+     * Run a script from its snapshot if it has an up to date one. Otherwise scan and
+     * parse it as usual and write the snapshot for the next run.
+     */
+    private static void runSnapshot(Path script, CharSequence source) {
+        if (!quiet) {
+            ConsoleOutput.out.println(source);
+        }
+        Path path = Snapshot.pathFor(script);
+        // Stack-safe and compact runs do not optimize, and the printed tree shows
+        // the difference.
+        int flags = stackSafe || compact ? 0 : Snapshot.OPTIMIZED;
+        Diagnostics diagnostics = new Diagnostics(ConsoleOutput.err);
+        PipelineStats stats = showStats ? new PipelineStats() : PipelineStats.NONE;
+        // Both kinds of run load the compact tree the snapshot is stored as.
+        CompactAst ast = null;
+        try {
+            ast = Snapshot.readCompact(path, source, flags);
+        } catch (IOException e) {
+            ConsoleOutput.err.println("Ignoring snapshot: " + e.getMessage());
+        }
+        if (compact) {
+            if (ast == null) {
+                ast = parseCompact(source, diagnostics, stats);
+                if (ast != null) {
+                    writeSnapshot(path, source, ast, flags);
+                }
+            }
+            if (ast != null) {
+                reportCompact(ast, diagnostics, stats);
+            }
+        } else if (ast != null) {
+            Expr expr = ast.toExpr();
+            report(new RunResult(expr, evaluate(expr, diagnostics, options, stats), diagnostics));
+        } else {
+            RunResult result = run(source, diagnostics, options, stats);
+            if (!diagnostics.hadError()) {
+                writeSnapshot(path, source, CompactAst.of(result.expr), flags);
+            }
+            report(result);
+        }
+        if (showStats) {
+            ConsoleOutput.err.println(stats.toJson());
+        }
+    }
+
+    private static void writeSnapshot(Path path, CharSequence source, CompactAst ast, int flags) {
+        try {
+            Snapshot.writeCompact(path, source, ast, flags);
+        } catch (IOException e) {
+            ConsoleOutput.err.println("Could not write snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run every script in a directory or manifest in parallel.
+     * @param target Directory or manifest listing the scripts.
+     * @param evaluate False to only scan and parse the scripts.
+     */
+    private static void runBatch(String target, boolean evaluate) throws IOException {
+        BatchRunner batch = new BatchRunner(evaluate, options, ForkJoinPool.commonPool());
+        batch.run(BatchRunner.scripts(Paths.get(target)), ConsoleOutput.out);
+
+        if (batch.hadSyntaxErrors()) {
+            ConsoleOutput.exit(65);
+        }
+        if (batch.hadUnreadableScripts()) {
+            ConsoleOutput.exit(66);
+        }
+        // A script that crashed the interpreter is reported like a runtime error.
+        if (batch.hadRuntimeErrors() || batch.hadCrashedScripts()) {
+            ConsoleOutput.exit(70);
+        }
+    }
+
+    /**
+     * Scan, parse and evaluate standard input as it arrives instead of waiting for
+     * the whole input to be read. The input is not echoed, since it is never held
+     * in full. Tokens are scanned as the parser asks for them, so with --stats the
+     * parse phase includes scanning and the scan phase stays empty.
+     */
+    private static void runStream() {
+        Diagnostics diagnostics = new Diagnostics(ConsoleOutput.err);
+        PipelineStats stats = showStats ? new PipelineStats() : PipelineStats.NONE;
+        Scanner scanner = new Scanner(new InputStreamReader(System.in, StandardCharsets.UTF_8), diagnostics);
+        TokenWindow tokens = new TokenWindow(scanner, stats);
+        if (compact) {
+            CompactAst ast = parseCompact(tokens, diagnostics, stats);
+            if (ast != null) {
+                reportCompact(ast, diagnostics, stats);
+            }
+        } else {
+            report(execute(tokens, diagnostics, options, stats));
+        }
+        if (showStats) {
+            ConsoleOutput.err.println(stats.toJson());
+        }
+
+        if (hadError) {
+            ConsoleOutput.exit(65);
+        }
+        if (hadRuntimeError) {
+            ConsoleOutput.exit(70);
+        }
+    }
+
+    private static void runPrompt() throws IOException {
+        InputStreamReader input = new InputStreamReader(System.in);
+        BufferedReader reader = new BufferedReader(input);
+
+        for (;;) {
+            ConsoleOutput.out.println("> ");
+            // Piped input is run in one go, and its results written in large
+            // blocks; only flush when the next line has not arrived yet.
+            if (!reader.ready()) {
+                ConsoleOutput.flush();
+            }
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            run(line);
+            hadError = false;
+        }
+    }
+
+    private static void run(CharSequence source) {
+        if (!quiet) {
+            ConsoleOutput.out.println(source);
+        }
+        PipelineStats stats = showStats ? new PipelineStats() : PipelineStats.NONE;
+        if (compact) {
+            runCompact(source, new Diagnostics(ConsoleOutput.err), stats);
+        } else {
+            report(run(source, new Diagnostics(ConsoleOutput.err), options, stats));
+        }
+        if (showStats) {
+            ConsoleOutput.err.println(stats.toJson());
+        }
+    }
+
+    /**
+     * Run a source through a CompactAst. Like in stack-safe mode the tree is not
+     * optimized, so it is printed as parsed. The compact tree is printed and
+     * evaluated without recursion, but parseCompact() recurses, so in stack-safe
+     * mode the tree is converted from what the iterative parser builds instead.
+     */
+    private static void runCompact(CharSequence source, Diagnostics diagnostics, PipelineStats stats) {
+        CompactAst ast = parseCompact(source, diagnostics, stats);
+        if (ast != null) {
+            reportCompact(ast, diagnostics, stats);
+        }
+    }
+
+    /**
+     * @return The compact tree of a source, or null if it has a syntax error.
+     */
+    private static CompactAst parseCompact(CharSequence source, Diagnostics diagnostics, PipelineStats stats) {
+        stats.start();
+        Scanner scanner = new Scanner(source, diagnostics);
+        TokenBuffer tokens = scanner.scanTokenBuffer();
+        stats.stop(PipelineStats.Phase.SCAN);
+        stats.countTokens(tokens);
+        return parseCompact(tokens, diagnostics, stats);
+    }
+
+    /**
+     * @return The compact tree parsed from the given tokens, or null if they have a
+     *  syntax error.
+     */
+    private static CompactAst parseCompact(TokenSource tokens, Diagnostics diagnostics, PipelineStats stats) {
+        stats.start();
+        CompactAst ast;
+        if (stackSafe) {
+            Expr expr = new Parser(tokens, diagnostics, Parser.Strategy.ITERATIVE).parse();
+            ast = expr == null ? null : CompactAst.of(expr);
+        } else {
+            ast = new Parser(tokens, diagnostics).parseCompact();
+        }
+        stats.stop(PipelineStats.Phase.PARSE);
+        if (diagnostics.hadError()) {
+            hadError = true;
+            return null;
+        }
+        stats.countNodes(ast);
+        return ast;
+    }
+
+    /**
+     * Print a compact tree, then evaluate it and print its value.
+     */
+    private static void reportCompact(CompactAst ast, Diagnostics diagnostics, PipelineStats stats) {
+        ConsoleOutput.out.println(new AstPrinter().print(ast));
+
+        stats.start();
+        Object value = interpreter.interpret(ast, diagnostics);
+        stats.stop(PipelineStats.Phase.EVALUATE);
+        if (diagnostics.hadRuntimeError()) {
+            hadRuntimeError = true;
+            return;
+        }
+        ConsoleOutput.out.println(Interpreter.stringify(value));
+    }
+
+    /**
+     * Print the outcome of a run and record whether it failed.
+     */
+    private static void report(RunResult result) {
+        // Stop if there was a syntax error
+        if (result.diagnostics.hadError()) {
+            hadError = true;
+            return;
+        }
+        AstPrinter printer = new AstPrinter();
+        ConsoleOutput.out.println(printer.print(result.expr));
+        if (result.diagnostics.hadRuntimeError()) {
+            hadRuntimeError = true;
+            return;
+        }
+        ConsoleOutput.out.println(Interpreter.stringify(result.value));
+    }
+
+    /**
+     * Scan, parse and evaluate a source with the default options, without touching
+     * any global state. Errors are collected in the given diagnostics, which must
+     * not be shared with other runs.
+     * @param source Source code to run.
+     * @param diagnostics Collects errors for this run.
+     * @return The parsed expression and its value.
+     */
+    public static RunResult run(CharSequence source, Diagnostics diagnostics) {
+        return run(source, diagnostics, RunOptions.DEFAULT);
+    }
+
+    /**
+     * Run a source like run(CharSequence, Diagnostics) does, with the given options.
+     * The command line flags do not affect it. Concurrent runs only share the
+     * compiled forms of trees, which are safe to share.
+     * @param options How to parse and evaluate the source.
+     */
+    public static RunResult run(CharSequence source, Diagnostics diagnostics, RunOptions options) {
+        return run(source, diagnostics, options, PipelineStats.NONE);
+    }
+
+    /**
+     * Run a source like run(CharSequence, Diagnostics, RunOptions) does, recording
+     * what each phase costs.
+     * @param stats Collects the cost of this run.
+     */
+    public static RunResult run(CharSequence source, Diagnostics diagnostics, RunOptions options, PipelineStats stats) {
+        stats.start();
+        Scanner scanner = new Scanner(source, diagnostics);
+        TokenBuffer tokens = scanner.scanTokenBuffer();
+        stats.stop(PipelineStats.Phase.SCAN);
+        stats.countTokens(tokens);
+        return execute(tokens, diagnostics, options, stats);
+    }
+
+    /**
+     * Run a source, reusing the expression parsed from an identical earlier source
+     * if the cache still holds it.
+     * @param source Source code to run.
+     * @param diagnostics Collects errors for this run.
+     * @param options How to parse and evaluate the source. A cache should only be
+     *  shared between runs with the same parser strategy.
+     * @param cache Cache of parsed expressions, may be shared between runs.
+     * @return The parsed expression and its value.
+     */
+    public static RunResult run(CharSequence source, Diagnostics diagnostics, RunOptions options, AstCache cache) {
+        Expr expr = cache.get(source);
+        if (expr == null) {
+            Scanner scanner = new Scanner(source, diagnostics);
+            expr = parse(scanner.scanTokenBuffer(), diagnostics, options, PipelineStats.NONE);
+            if (diagnostics.hadError()) {
+                return new RunResult(expr, null, diagnostics);
+            }
+            cache.put(source, expr);
+        }
+        return new RunResult(expr, evaluate(expr, diagnostics, options, PipelineStats.NONE), diagnostics);
+    }
+
+    /**
+     * Scan and parse a source with the default parser without evaluating it,
+     * recovering from syntax errors so that every error is reported in one pass.
+     * @param source Source code to check.
+     * @param diagnostics Collects errors for this run.
+     * @return The expressions that parsed.
+     */
+    public static ParseResult check(CharSequence source, Diagnostics diagnostics) {
+        return check(source, diagnostics, RunOptions.DEFAULT);
+    }
+
+    /**
+     * Check a source like check(CharSequence, Diagnostics) does, with the parser
+     * of the given options.
+     */
+    public static ParseResult check(CharSequence source, Diagnostics diagnostics, RunOptions options) {
+        Scanner scanner = new Scanner(source, diagnostics);
+        return new Parser(scanner.scanTokenBuffer(), diagnostics, options.strategy).parseAll();
+    }
+
+    private static RunResult execute(TokenSource tokens, Diagnostics diagnostics, RunOptions options, PipelineStats stats) {
+        Expr expr = parse(tokens, diagnostics, options, stats);
+
+        // Stop if there was a syntax error
+        if (diagnostics.hadError()) {
+            return new RunResult(expr, null, diagnostics);
+        }
+        return new RunResult(expr, evaluate(expr, diagnostics, options, stats), diagnostics);
+    }
+
+    /**
+     * Parse an expression and, if it has no syntax errors, optimize it. The
+     * optimizer recurses, so it is skipped in stack-safe mode.
+     */
+    private static Expr parse(TokenSource tokens, Diagnostics diagnostics, RunOptions options, PipelineStats stats) {
+        stats.start();
+        Expr expr = new Parser(tokens, diagnostics, options.strategy).parse();
+        stats.stop(PipelineStats.Phase.PARSE);
+        stats.countNodes(expr);
+        if (diagnostics.hadError() || options.stackSafe()) {
+            return expr;
+        }
+        stats.start();
+        Optimizer optimizer = new Optimizer();
+        expr = optimizer.optimize(expr);
+        stats.stop(PipelineStats.Phase.OPTIMIZE);
+        stats.countRemoved(optimizer.removed());
+        return expr;
+    }
+
+    /**
+     * Evaluate an expression, counting compilation to bytecode as evaluation.
+     */
+    private static Object evaluate(Expr expr, Diagnostics diagnostics, RunOptions options, PipelineStats stats) {
+        stats.start();
+        Object value = evaluate(expr, diagnostics, options);
+        stats.stop(PipelineStats.Phase.EVALUATE);
+        return value;
+    }
+
+    private static Object evaluate(Expr expr, Diagnostics diagnostics, RunOptions options) {
+        if (options.stackSafe()) {
+            return interpreter.interpretIterative(expr, diagnostics);
+        }
+        if (options.useVm) {
+            Chunk chunk = chunks.computeIfAbsent(expr, Lox::compile);
+            if (chunk != NOT_COMPILED) {
+                return vm.get().interpret(chunk, diagnostics);
+            }
+        }
+        return interpreter.interpret(expr, diagnostics);
+    }
+
+    private static Chunk compile(Expr expr) {
+        Chunk chunk = new Compiler().compile(expr);
+        return chunk != null ? chunk : NOT_COMPILED;
+    }
+}
@@ -0,0 +1,75 @@
+package lox;
+
+/**
+ * Hands out boxed number literals so that every distinct value is allocated at most
+ * once per scan. Small whole numbers come from a cache shared by all scanners.
+ */
+public class NumberPool {
+    private static final int SMALL_LIMIT = 256;
+    private static final Double[] SMALL = new Double[SMALL_LIMIT];
+
+    static {
+        for (int i = 0; i < SMALL_LIMIT; i++) {
+            SMALL[i] = (double) i;
+        }
+    }
+
+    // Open addressing table keyed by the raw bits of the double.
+    private long[] keys = new long[64];
+    private Double[] values = new Double[64];
+    private int size = 0;
+
+    /**
+     * @param value Numeric value of a literal.
+     * @return The shared boxed instance for the value.
+     */
+    Double valueOf(double value) {
+        if (value >= 0 && value < SMALL_LIMIT && value == (int) value
+                && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0)) {
+            return SMALL[(int) value];
+        }
+
+        long bits = Double.doubleToRawLongBits(value);
+        int mask = keys.length - 1;
+        int slot = hash(bits) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == bits) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        Double boxed = value;
+        keys[slot] = bits;
+        values[slot] = boxed;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return boxed;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Double[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Double[oldValues.length * 2];
+        int mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash(long bits) {
+        long h = bits * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,177 @@
+package lox;
+
+/**
+ * Simplifies a parsed expression before it is evaluated. Operators whose operands
+ * are all literals are evaluated once here, grouping nodes are dropped since the
+ * tree already encodes precedence, and identities that provably keep the value and
+ * any runtime error unchanged, such as x * 1 or !!b, are removed.
+ */
+public class Optimizer implements Expr.Visitor<Expr> {
+    // Folds constant operators with exactly the interpreter's semantics.
+    private final Interpreter interpreter = new Interpreter();
+    private int removed = 0;
+
+    Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+
+    /**
+     * @return Number of nodes removed from the trees optimized so far.
+     */
+    int removed() {
+        return removed;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Expr folded = fold(new Expr.Binary(left, expr.operator, right));
+            if (folded != null) {
+                removed += 2;
+                return folded;
+            }
+        }
+
+        switch (expr.operator.type) {
+            case STAR:
+                if (isNumeric(left) && isLiteral(right, 1.0)) {
+                    removed += 2;
+                    return left;
+                }
+                if (isLiteral(left, 1.0) && isNumeric(right)) {
+                    removed += 2;
+                    return right;
+                }
+                break;
+            case SLASH:
+                if (isNumeric(left) && isLiteral(right, 1.0)) {
+                    removed += 2;
+                    return left;
+                }
+                break;
+            case MINUS:
+                // Not x + 0, since -0 + 0 is 0.
+                if (isNumeric(left) && isLiteral(right, 0.0)) {
+                    removed += 2;
+                    return left;
+                }
+                break;
+        }
+
+        if (left == expr.left && right == expr.right) {
+            return expr;
+        }
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        removed++;
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = optimize(expr.right);
+
+        if (right instanceof Expr.Literal) {
+            Expr folded = fold(new Expr.Unary(expr.operator, right));
+            if (folded != null) {
+                removed += 1;
+                return folded;
+            }
+        }
+
+        // !!b is b and --x is x, as long as b is already a boolean and x a number.
+        if (right instanceof Expr.Unary && ((Expr.Unary) right).operator.type == expr.operator.type) {
+            Expr operand = ((Expr.Unary) right).right;
+            if (expr.operator.type == TokenType.BANG ? isBoolean(operand) : isNumeric(operand)) {
+                removed += 2;
+                return operand;
+            }
+        }
+
+        if (right == expr.right) {
+            return expr;
+        }
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    /**
+     * Evaluate an operator whose operands are literals.
+     * @return The literal result, or null if evaluating it is a runtime error,
+     *  which must then still happen at runtime.
+     */
+    private Expr fold(Expr expr) {
+        try {
+            return new Expr.Literal(expr.accept(interpreter));
+        } catch (RuntimeError error) {
+            return null;
+        }
+    }
+
+    private static boolean isLiteral(Expr expr, double value) {
+        return expr instanceof Expr.Literal && Double.valueOf(value).equals(((Expr.Literal) expr).value);
+    }
+
+    /**
+     * @return True if the expression either evaluates to a number or fails.
+     */
+    private static boolean isNumeric(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            return ((Expr.Literal) expr).value instanceof Double;
+        }
+        if (expr instanceof Expr.Unary) {
+            return ((Expr.Unary) expr).operator.type == TokenType.MINUS;
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return true;
+                case PLUS:
+                    return isNumeric(binary.left) && isNumeric(binary.right);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if the expression either evaluates to a boolean or fails.
+     */
+    private static boolean isBoolean(Expr expr) {
+        if (expr instanceof Expr.Literal) {
+            return ((Expr.Literal) expr).value instanceof Boolean;
+        }
+        if (expr instanceof Expr.Unary) {
+            return ((Expr.Unary) expr).operator.type == TokenType.BANG;
+        }
+        if (expr instanceof Expr.Binary) {
+            switch (((Expr.Binary) expr).operator.type) {
+                case BANG_EQUAL:
+                case EQUAL_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return true;
+            }
+        }
+        return false;
+    }
+}
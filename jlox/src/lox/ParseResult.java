@@ -0,0 +1,17 @@
+package lox;
+
+import java.util.List;
+
+/**
+ * Outcome of parsing a source with error recovery: every expression that parsed,
+ * and the diagnostics for the ones that did not.
+ */
+public class ParseResult {
+    final List<Expr> expressions;
+    final Diagnostics diagnostics;
+
+    ParseResult(List<Expr> expressions, Diagnostics diagnostics) {
+        this.expressions = expressions;
+        this.diagnostics = diagnostics;
+    }
+}
@@ -0,0 +1,590 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//expression     → equality ;
+//equality       → comparison ( ( "!=" | "==" ) comparison )* ;
+//comparison     → term ( ( ">" | ">=" | "<" | "<=" ) term )* ;
+//term           → factor ( ( "-" | "+" ) factor )* ;
+//factor         → unary ( ( "/" | "*" ) unary )* ;
+//unary          → ( "!" | "-" ) unary | primary ;
+//primary        → NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER | "(" expression ")" ;
+
+public class Parser {
+    public static class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public enum Strategy {
+        // One method per grammar rule, recursing for nested expressions.
+        RECURSIVE_DESCENT,
+        // Operator precedence parsing with explicit stacks, for inputs nested too
+        // deeply to recurse on.
+        ITERATIVE,
+        // Top-down operator precedence parsing driven by a table indexed by token
+        // type, so a literal takes two calls instead of one per precedence level.
+        PRATT
+    }
+
+    // Precedences used by the iterative parser. Prefix operators bind tighter than
+    // any binary operator; an open parenthesis is never reduced by an operator.
+    private static final int PAREN = 0;
+    private static final int EQUALITY = 1;
+    private static final int COMPARISON = 2;
+    private static final int TERM = 3;
+    private static final int FACTOR = 4;
+    private static final int PREFIX = 5;
+
+    // Binary operator precedence of each token type by ordinal, 0 if the token is
+    // not a binary operator.
+    private static final int[] INFIX_PRECEDENCE = new int[TokenType.values().length];
+
+    static {
+        INFIX_PRECEDENCE[TokenType.BANG_EQUAL.ordinal()] = EQUALITY;
+        INFIX_PRECEDENCE[TokenType.EQUAL_EQUAL.ordinal()] = EQUALITY;
+        INFIX_PRECEDENCE[TokenType.GREATER.ordinal()] = COMPARISON;
+        INFIX_PRECEDENCE[TokenType.GREATER_EQUAL.ordinal()] = COMPARISON;
+        INFIX_PRECEDENCE[TokenType.LESS.ordinal()] = COMPARISON;
+        INFIX_PRECEDENCE[TokenType.LESS_EQUAL.ordinal()] = COMPARISON;
+        INFIX_PRECEDENCE[TokenType.MINUS.ordinal()] = TERM;
+        INFIX_PRECEDENCE[TokenType.PLUS.ordinal()] = TERM;
+        INFIX_PRECEDENCE[TokenType.SLASH.ordinal()] = FACTOR;
+        INFIX_PRECEDENCE[TokenType.STAR.ordinal()] = FACTOR;
+    }
+
+    private final TokenSource tokens;
+    private final Diagnostics diagnostics;
+    private final Strategy strategy;
+    private int current = 0;
+
+
+    // Each method for parsing a grammar rule produces a syntax tree for that rule
+    // and returns it to the caller. When the body of a rule contains a nonterminal
+    // we call that other rule's method.
+    public Parser(List<Token> tokens, Diagnostics diagnostics) {
+        this(TokenSource.of(tokens), diagnostics);
+    }
+
+    public Parser(TokenSource tokens, Diagnostics diagnostics) {
+        this(tokens, diagnostics, Strategy.RECURSIVE_DESCENT);
+    }
+
+    public Parser(TokenSource tokens, Diagnostics diagnostics, Strategy strategy) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.strategy = strategy;
+    }
+
+    public Expr parse() {
+        try {
+            return parseExpression();
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a sequence of expressions separated by semicolons, recovering from each
+     * syntax error at the next statement boundary, so that one pass reports every
+     * error in the source.
+     * @return The expressions that parsed, and the diagnostics of this parser.
+     */
+    public ParseResult parseAll() {
+        List<Expr> expressions = new ArrayList<>();
+        while (!isAtEnd()) {
+            Expr expr = parseStatement();
+            if (expr != null) {
+                expressions.add(expr);
+            }
+        }
+        return new ParseResult(expressions, diagnostics);
+    }
+
+    /**
+     * Parse one expression and the semicolon after it, as parseAll() does.
+     * @return The expression, or null if it had a syntax error, in which case the
+     *  parser has moved on to the next statement boundary.
+     */
+    Expr parseStatement() {
+        try {
+            Expr expr = parseExpression();
+            if (!isAtEnd()) {
+                consume(TokenType.SEMICOLON, "Expect ';' after expression.");
+            }
+            return expr;
+        } catch (ParseError error) {
+            synchronize();
+            return null;
+        }
+    }
+
+    /**
+     * Parse the tokens [from, to) as a single expression.
+     * @return The expression, or null if those tokens are not exactly one expression.
+     */
+    Expr parseSpan(int from, int to) {
+        current = from;
+        try {
+            Expr expr = parseExpression();
+            return current == to ? expr : null;
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
+    /**
+     * Continue parsing from another token than the first.
+     */
+    void seek(int index) {
+        current = index;
+    }
+
+    /**
+     * @return Index of the next token to be parsed.
+     */
+    int position() {
+        return current;
+    }
+
+    private Expr parseExpression() {
+        switch (strategy) {
+            case ITERATIVE: return iterativeExpression();
+            case PRATT: return prattExpression(EQUALITY);
+            default: return expression();
+        }
+    }
+
+    private Expr expression() {
+        return equality();
+    }
+
+    private Expr equality() {
+        Expr expr = comparison();
+
+        while (match(TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL)) {
+            Token operator = previous();
+            Expr right = comparison();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+        return expr;
+    }
+
+    private Expr comparison() {
+        Expr expr = term();
+
+        while (match(TokenType.LESS_EQUAL, TokenType.LESS, TokenType.GREATER, TokenType.GREATER_EQUAL)) {
+            Token operator = previous();
+            Expr right = term();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+        return expr;
+    }
+
+    private Expr term() {
+        Expr expr = factor();
+
+        while (match(TokenType.MINUS, TokenType.PLUS)) {
+            Token operator = previous();
+            Expr right = factor();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+        return expr;
+    }
+
+    private Expr factor() {
+        Expr expr = unary();
+
+        while (match(TokenType.SLASH, TokenType.STAR)) {
+            Token operator = previous();
+            Expr right = unary();
+            expr = new Expr.Binary(expr, operator, right);
+        }
+        return expr;
+    }
+
+    private Expr unary() {
+        if (match(TokenType.BANG, TokenType.MINUS)) {
+            Token operator = previous();
+            Expr right = unary();
+            return new Expr.Unary(operator, right);
+        }
+        return primary();
+    }
+
+    private Expr primary() {
+        if (match(TokenType.LEFT_PAREN)) {
+            Expr expr = expression();
+            consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+            return new Expr.Grouping(expr);
+        }
+        return literal();
+    }
+
+    /**
+     * Parse an expression whose binary operators all bind at least as tightly as
+     * the given precedence. Operators are looked up in INFIX_PRECEDENCE instead of
+     * descending through one method per precedence level. Binary operators are
+     * left associative, so the right operand only takes tighter operators.
+     */
+    private Expr prattExpression(int precedence) {
+        Expr expr = prattPrefix();
+
+        for (;;) {
+            int infix = INFIX_PRECEDENCE[tokens.type(current).ordinal()];
+            if (infix == 0 || infix < precedence) {
+                return expr;
+            }
+            advance();
+            Token operator = previous();
+            Expr right = prattExpression(infix + 1);
+            expr = new Expr.Binary(expr, operator, right);
+        }
+    }
+
+    /**
+     * Parse a prefix operator expression or a primary expression.
+     */
+    private Expr prattPrefix() {
+        switch (tokens.type(current)) {
+            case BANG:
+            case MINUS: {
+                advance();
+                Token operator = previous();
+                return new Expr.Unary(operator, prattPrefix());
+            }
+            case LEFT_PAREN: {
+                advance();
+                Expr expr = prattExpression(EQUALITY);
+                consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+                return new Expr.Grouping(expr);
+            }
+            case FALSE:
+                current++;
+                return new Expr.Literal(false);
+            case TRUE:
+                current++;
+                return new Expr.Literal(true);
+            case NIL:
+                current++;
+                return new Expr.Literal(null);
+            case NUMBER:
+            case STRING:
+                current++;
+                return new Expr.Literal(tokens.literal(current - 1));
+            case IDENTIFIER:
+                advance();
+                return new Expr.Variable(previous());
+            default:
+                throw error(peek(), "Expected expression.");
+        }
+    }
+
+    /**
+     * Parse a single expression straight into a CompactAst, without creating Expr or
+     * Token objects. The grammar is the one prattExpression() parses.
+     * @return The tree, or null if there was a syntax error.
+     */
+    public CompactAst parseCompact() {
+        CompactAst ast = new CompactAst();
+        try {
+            compactExpression(ast, EQUALITY);
+            ast.trim();
+            return ast;
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Index of the node added for the expression.
+     */
+    private int compactExpression(CompactAst ast, int precedence) {
+        int expr = compactPrefix(ast);
+
+        for (;;) {
+            TokenType operator = tokens.type(current);
+            int infix = INFIX_PRECEDENCE[operator.ordinal()];
+            if (infix == 0 || infix < precedence) {
+                return expr;
+            }
+            int line = tokens.line(current);
+            current++;
+            compactExpression(ast, infix + 1);
+            expr = ast.binary(expr, operator, line);
+        }
+    }
+
+    private int compactPrefix(CompactAst ast) {
+        TokenType type = tokens.type(current);
+        switch (type) {
+            case BANG:
+            case MINUS: {
+                int line = tokens.line(current);
+                current++;
+                compactPrefix(ast);
+                return ast.unary(type, line);
+            }
+            case LEFT_PAREN: {
+                advance();
+                compactExpression(ast, EQUALITY);
+                consume(TokenType.RIGHT_PAREN, "Expect ')' after expression.");
+                return ast.grouping();
+            }
+            case FALSE:
+                current++;
+                return ast.literal(false);
+            case TRUE:
+                current++;
+                return ast.literal(true);
+            case NIL:
+                current++;
+                return ast.literal(null);
+            case NUMBER:
+            case STRING:
+                current++;
+                return ast.literal(tokens.literal(current - 1));
+            case IDENTIFIER: {
+                int line = tokens.line(current);
+                current++;
+                // The literal of an identifier is its interned name.
+                return ast.variable((String) tokens.literal(current - 1), line);
+            }
+            default:
+                throw error(peek(), "Expected expression.");
+        }
+    }
+
+    /**
+     * Parse an expression without recursion. Operands and pending operators are kept
+     * on explicit stacks; before an operator is pushed, every operator on the stack
+     * that binds at least as tightly is reduced, which keeps binary operators left
+     * associative. The stacks live on the heap, so nesting depth is only limited by
+     * memory, and the tree built is the same as the one expression() builds.
+     */
+    private Expr iterativeExpression() {
+        List<Expr> operands = new ArrayList<>();
+        List<Token> operators = new ArrayList<>();
+        int[] precedences = new int[16];
+        int openParens = 0;
+
+        for (;;) {
+            // Expecting an operand: any prefix operators and open parentheses, then
+            // a literal or variable.
+            for (;;) {
+                int precedence;
+                if (match(TokenType.BANG, TokenType.MINUS)) {
+                    precedence = PREFIX;
+                } else if (match(TokenType.LEFT_PAREN)) {
+                    precedence = PAREN;
+                    openParens++;
+                } else {
+                    break;
+                }
+                if (operators.size() == precedences.length) {
+                    precedences = Arrays.copyOf(precedences, precedences.length * 2);
+                }
+                precedences[operators.size()] = precedence;
+                // An open parenthesis only marks where its reduction stops.
+                operators.add(precedence == PAREN ? null : previous());
+            }
+            operands.add(literal());
+
+            // Close every parenthesis that ends here.
+            while (openParens > 0 && check(TokenType.RIGHT_PAREN)) {
+                reduce(operands, operators, precedences, EQUALITY);
+                advance();
+                operators.remove(operators.size() - 1);
+                openParens--;
+                Expr expr = operands.remove(operands.size() - 1);
+                operands.add(new Expr.Grouping(expr));
+            }
+
+            int precedence = binaryPrecedence();
+            if (precedence < 0) {
+                if (openParens > 0) {
+                    throw error(peek(), "Expect ')' after expression.");
+                }
+                reduce(operands, operators, precedences, EQUALITY);
+                return operands.get(0);
+            }
+            reduce(operands, operators, precedences, precedence);
+            if (operators.size() == precedences.length) {
+                precedences = Arrays.copyOf(precedences, precedences.length * 2);
+            }
+            precedences[operators.size()] = precedence;
+            advance();
+            operators.add(previous());
+        }
+    }
+
+    /**
+     * Pop operators that bind at least as tightly as the given precedence and
+     * combine them with their operands.
+     */
+    private void reduce(List<Expr> operands, List<Token> operators, int[] precedences, int precedence) {
+        while (!operators.isEmpty()) {
+            int top = precedences[operators.size() - 1];
+            if (top == PAREN || top < precedence) {
+                return;
+            }
+            Token operator = operators.remove(operators.size() - 1);
+            Expr right = operands.remove(operands.size() - 1);
+            if (top == PREFIX) {
+                operands.add(new Expr.Unary(operator, right));
+            } else {
+                Expr left = operands.remove(operands.size() - 1);
+                operands.add(new Expr.Binary(left, operator, right));
+            }
+        }
+    }
+
+    /**
+     * @return Precedence of the current token as a binary operator, or -1 if it is
+     *  not one.
+     */
+    private int binaryPrecedence() {
+        if (isAtEnd()) {
+            return -1;
+        }
+        switch (tokens.type(current)) {
+            case BANG_EQUAL:
+            case EQUAL_EQUAL:
+                return EQUALITY;
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return COMPARISON;
+            case MINUS:
+            case PLUS:
+                return TERM;
+            case SLASH:
+            case STAR:
+                return FACTOR;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Parse a primary expression other than a parenthesized expression: a literal
+     * or a variable.
+     */
+    private Expr literal() {
+        if (match(TokenType.FALSE)) {
+            return new Expr.Literal(false);
+        }
+        if (match(TokenType.TRUE)) {
+            return new Expr.Literal(true);
+        }
+        if (match(TokenType.NIL)) {
+            return new Expr.Literal(null);
+        }
+        if (match(TokenType.NUMBER, TokenType.STRING)) {
+            return new Expr.Literal(tokens.literal(current - 1));
+        }
+        if (match(TokenType.IDENTIFIER)) {
+            return new Expr.Variable(previous());
+        }
+        throw error(peek(), "Expected expression.");
+    }
+
+    /**
+     * Check if the current token has any of the given types and consume the token on a match.
+     * @param types types to match against.
+     * @return True if the current token matches any of the given types, false otherwise.
+     */
+    private boolean match(TokenType... types) {
+        for (TokenType type : types) {
+            if (check(type)) {
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the current token is of the given type and do not consume the checked token
+     * @param type Type to match against.
+     * @return True if the current token matches the type parameter, false otherwise.
+     */
+    private boolean check(TokenType type) {
+        if (isAtEnd()) {
+            return false;
+        }
+        return tokens.type(current) == type;
+    }
+
+    /**
+     * Advances the current token index if possible. The consumed token is not
+     * materialized; callers that keep it ask for it with previous().
+     */
+    private void advance() {
+        if (!isAtEnd()) {
+            current++;
+        }
+    }
+
+    /**
+     * @return True if we have run out of tokens to consume, false otherwise.
+     */
+    private boolean isAtEnd() {
+        return tokens.type(current) == TokenType.EOF;
+    }
+
+    /**
+     * @return The current token we have yet to consume.
+     */
+    private Token peek() {
+        return tokens.token(current);
+    }
+
+    /**
+     * @return The most recently consumed token.
+     */
+    private Token previous() {
+        return tokens.token(current - 1);
+    }
+
+    private void consume(TokenType type, String message) {
+        if (!check(type)) {
+            throw error(peek(), message);
+        }
+        advance();
+    }
+
+    private ParseError error(Token token, String message) {
+        diagnostics.error(token, message);
+        return new ParseError();
+    }
+
+    /**
+     * Discard tokens until we've found a statement boundary.
+     */
+    private void synchronize() {
+        advance();
+
+        while (!isAtEnd()) {
+            if (tokens.type(current - 1) == TokenType.SEMICOLON) {
+                return;
+            }
+
+            switch (tokens.type(current)) {
+                case CLASS:
+                case FUN:
+                case VAR:
+                case FOR:
+                case IF:
+                case WHILE:
+                case PRINT:
+                case RETURN:
+                    return;
+            }
+            advance();
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What each phase of running a source cost: wall time and bytes allocated by the
+ * running thread per phase, the tokens scanned by type, the size and depth of the
+ * parsed tree, and how many of its nodes the optimizer removed. Phases that run
+ * more than once add up.
+ */
+public class PipelineStats {
+    public enum Phase {
+        SCAN, PARSE, OPTIMIZE, EVALUATE
+    }
+
+    /**
+     * Shared instance that records nothing, for runs without statistics.
+     */
+    static final PipelineStats NONE = new PipelineStats(false);
+
+    // Names of the compact node kinds, as countNodes(Expr) counts them.
+    private static final String[] COMPACT_KINDS = {"Binary", "Grouping", "Literal", "Unary", "Variable"};
+
+    // Null if the JVM cannot count allocations per thread.
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final boolean enabled;
+    private final long[] nanos = new long[Phase.values().length];
+    private final long[] allocated = new long[Phase.values().length];
+    private final int[] tokens = new int[TokenType.values().length];
+    private final Map<String, Integer> nodes = new TreeMap<>();
+    private int maxDepth = 0;
+    private int nodesRemoved = 0;
+
+    private long startNanos;
+    private long startAllocated;
+
+    public PipelineStats() {
+        this(true);
+    }
+
+    private PipelineStats(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start measuring a phase on the current thread.
+     */
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        startAllocated = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stop measuring the phase started last and add its cost to the given phase.
+     */
+    void stop(Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        nanos[phase.ordinal()] += System.nanoTime() - startNanos;
+        allocated[phase.ordinal()] += allocatedBytes() - startAllocated;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    void countTokens(TokenBuffer buffer) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens[buffer.type(i).ordinal()]++;
+        }
+    }
+
+    /**
+     * Count one token, for tokens scanned one at a time while parsing.
+     */
+    void countToken(TokenType type) {
+        if (!enabled) {
+            return;
+        }
+        tokens[type.ordinal()]++;
+    }
+
+    /**
+     * Count the nodes of a tree by kind and record its depth, without recursing.
+     */
+    void countNodes(Expr root) {
+        if (!enabled || root == null) {
+            return;
+        }
+        List<Expr> work = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        work.add(root);
+        depths.add(1);
+        while (!work.isEmpty()) {
+            Expr expr = work.remove(work.size() - 1);
+            int depth = depths.remove(depths.size() - 1);
+            nodes.merge(expr.getClass().getSimpleName(), 1, Integer::sum);
+            maxDepth = Math.max(maxDepth, depth);
+            if (expr instanceof Expr.Binary) {
+                work.add(((Expr.Binary) expr).left);
+                depths.add(depth + 1);
+                work.add(((Expr.Binary) expr).right);
+                depths.add(depth + 1);
+            } else if (expr instanceof Expr.Grouping) {
+                work.add(((Expr.Grouping) expr).expression);
+                depths.add(depth + 1);
+            } else if (expr instanceof Expr.Unary) {
+                work.add(((Expr.Unary) expr).right);
+                depths.add(depth + 1);
+            }
+        }
+    }
+
+    /**
+     * Count the nodes of a compact tree by kind and record its depth. Operands come
+     * before their operator, so one pass finds the height of every subtree.
+     */
+    void countNodes(CompactAst ast) {
+        if (!enabled || ast == null) {
+            return;
+        }
+        int[] heights = new int[ast.size()];
+        for (int node = 0; node < ast.size(); node++) {
+            byte kind = ast.kind(node);
+            nodes.merge(COMPACT_KINDS[kind], 1, Integer::sum);
+            if (kind == CompactAst.BINARY) {
+                heights[node] = 1 + Math.max(heights[ast.left(node)], heights[ast.right(node)]);
+            } else if (kind == CompactAst.GROUPING || kind == CompactAst.UNARY) {
+                heights[node] = 1 + heights[ast.operand(node)];
+            } else {
+                heights[node] = 1;
+            }
+        }
+        maxDepth = Math.max(maxDepth, heights[ast.root()]);
+    }
+
+    void countRemoved(int count) {
+        if (!enabled) {
+            return;
+        }
+        nodesRemoved += count;
+    }
+
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return Bytes allocated by the thread during the phase, or 0 if the JVM does
+     *  not count allocations per thread.
+     */
+    public long allocatedBytes(Phase phase) {
+        return allocated[phase.ordinal()];
+    }
+
+    public int tokens(TokenType type) {
+        return tokens[type.ordinal()];
+    }
+
+    /**
+     * @return Number of parsed nodes of the given class, e.g. "Binary".
+     */
+    public int nodes(String kind) {
+        return nodes.getOrDefault(kind, 0);
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return Number of parsed nodes the optimizer removed.
+     */
+    public int nodesRemoved() {
+        return nodesRemoved;
+    }
+
+    /**
+     * @return The statistics as a JSON object. Token types and node kinds that did
+     *  not occur are left out.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": {");
+        for (Phase phase : Phase.values()) {
+            json.append(phase.ordinal() == 0 ? "\n" : ",\n")
+                    .append("    \"").append(phase.name().toLowerCase()).append("\": {\"nanos\": ")
+                    .append(nanos(phase)).append(", \"allocatedBytes\": ").append(allocatedBytes(phase))
+                    .append('}');
+        }
+        json.append("\n  },\n  \"tokens\": {");
+        int total = 0;
+        String separator = "";
+        for (TokenType type : TokenType.values()) {
+            int count = tokens(type);
+            if (count > 0) {
+                json.append(separator).append("\n    \"").append(type.name()).append("\": ").append(count);
+                separator = ",";
+                total += count;
+            }
+        }
+        json.append(separator).append("\n    \"total\": ").append(total);
+        json.append("\n  },\n  \"nodes\": {");
+        total = 0;
+        separator = "";
+        for (Map.Entry<String, Integer> kind : nodes.entrySet()) {
+            json.append(separator).append("\n    \"").append(kind.getKey()).append("\": ").append(kind.getValue());
+            separator = ",";
+            total += kind.getValue();
+        }
+        json.append(separator).append("\n    \"total\": ").append(total);
+        json.append("\n  },\n  \"maxDepth\": ").append(maxDepth);
+        json.append(",\n  \"nodesRemoved\": ").append(nodesRemoved).append("\n}");
+        return json.toString();
+    }
+}
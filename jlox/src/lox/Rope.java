@@ -0,0 +1,128 @@
+package lox;
+
+import java.util.ArrayDeque;
+
+/**
+ * A string made by `+` that has not been copied into one String yet. Concatenating
+ * only links the two operands, so a chain of n concatenations takes O(n) rather than
+ * copying the growing prefix each time. The characters are copied once, when the
+ * string is printed, compared or hashed, and the result is kept.
+ *
+ * Runtime string values are either a String or a Rope; code that looks at the
+ * characters treats both as a CharSequence and calls toString(). A Rope is never
+ * equals() to a String with the same text, see equals().
+ */
+final class Rope implements CharSequence {
+    // Concatenations at most this long are copied right away; a node costs more.
+    private static final int SHORT = 32;
+
+    // Each a String or a Rope, until flattened; then both are dropped so the
+    // parts are not kept alive alongside the copy. Guarded by this.
+    private CharSequence left;
+    private CharSequence right;
+    private final int length;
+    // The flattened string, once needed. Racing threads at worst both flatten.
+    private volatile String flat;
+
+    private Rope(CharSequence left, CharSequence right, int length) {
+        this.left = left;
+        this.right = right;
+        this.length = length;
+    }
+
+    /**
+     * @param left A String or a Rope.
+     * @param right A String or a Rope.
+     * @return The two strings joined, as a String if short and a Rope otherwise.
+     */
+    static CharSequence concat(CharSequence left, CharSequence right) {
+        if (left.length() == 0) {
+            return right;
+        }
+        if (right.length() == 0) {
+            return left;
+        }
+        int length = left.length() + right.length();
+        if (length < 0) {
+            throw new OutOfMemoryError("String too long.");
+        }
+        if (length <= SHORT) {
+            return left.toString().concat(right.toString());
+        }
+        return new Rope(left, right, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    /**
+     * Copy the leaves left to right. Ropes built by a long chain of `+` are as deep
+     * as the chain, so the parts still to copy are kept on an explicit stack.
+     */
+    @Override
+    public String toString() {
+        String result = flat;
+        if (result != null) {
+            return result;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        ArrayDeque<CharSequence> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            CharSequence next = pending.pop();
+            if (next instanceof Rope) {
+                ((Rope) next).expand(pending, builder);
+            } else {
+                builder.append(next);
+            }
+        }
+        result = builder.toString();
+        synchronized (this) {
+            flat = result;
+            left = null;
+            right = null;
+        }
+        return result;
+    }
+
+    /**
+     * Append this rope if it is already flat, or push its parts to copy next. A
+     * shared rope may be flattened by another thread meanwhile, which drops the
+     * parts, so they are read under the same lock.
+     */
+    private synchronized void expand(ArrayDeque<CharSequence> pending, StringBuilder builder) {
+        if (flat != null) {
+            builder.append(flat);
+            return;
+        }
+        pending.push(right);
+        pending.push(left);
+    }
+
+    /**
+     * Like String.equals(), only true for another Rope, so that equality stays
+     * symmetric: a String is never equal to a Rope. Lox compares strings by their
+     * text whatever their class, as Interpreter.isEqual() and the VM do.
+     */
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof Rope && ((Rope) object).length == length && object.toString().equals(toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
@@ -0,0 +1,36 @@
+package lox;
+
+/**
+ * How to run a source: which parser to use and how to evaluate the tree. A run is
+ * given its options rather than reading the command line flags, so runs with
+ * different options can go on concurrently.
+ */
+public final class RunOptions {
+    /**
+     * Parse by recursive descent, then optimize the tree and walk it.
+     */
+    public static final RunOptions DEFAULT = new RunOptions(Parser.Strategy.RECURSIVE_DESCENT, false);
+
+    final Parser.Strategy strategy;
+    // Evaluate with the bytecode VM instead of walking the tree.
+    final boolean useVm;
+
+    /**
+     * @param strategy How to parse. Strategy.ITERATIVE makes the whole run stack-safe:
+     *  the tree is not optimized, and it is evaluated without recursion even if useVm
+     *  is set.
+     * @param useVm Evaluate with the bytecode VM instead of walking the tree.
+     */
+    public RunOptions(Parser.Strategy strategy, boolean useVm) {
+        this.strategy = strategy;
+        this.useVm = useVm;
+    }
+
+    /**
+     * @return Whether nothing in the run recurses, so deeply nested input cannot
+     *  overflow the stack.
+     */
+    boolean stackSafe() {
+        return strategy == Parser.Strategy.ITERATIVE;
+    }
+}
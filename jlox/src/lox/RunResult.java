@@ -0,0 +1,25 @@
+package lox;
+
+/**
+ * Outcome of running one source through the scanner, parser and interpreter.
+ */
+public class RunResult {
+    // Null if the source could not be parsed.
+    final Expr expr;
+    // Null if evaluation did not happen or failed, or if the value is nil.
+    final Object value;
+    final Diagnostics diagnostics;
+
+    RunResult(Expr expr, Object value, Diagnostics diagnostics) {
+        this.expr = expr;
+        this.value = value;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * @return True if the source was parsed and evaluated without errors.
+     */
+    public boolean succeeded() {
+        return !diagnostics.hadError() && !diagnostics.hadRuntimeError();
+    }
+}
@@ -0,0 +1,12 @@
+package lox;
+
+public class RuntimeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final Token token;
+
+    RuntimeError(Token token, String message) {
+        super(message);
+        this.token = token;
+    }
+}
@@ -0,0 +1,459 @@
+package lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public class Scanner {
+    private final CharSequence source;
+    private TokenBuffer tokens;
+    private final NumberPool numbers = new NumberPool();
+    private final SymbolTable symbols = new SymbolTable();
+    private final Diagnostics diagnostics;
+
+    // Whole numbers up to this many digits are exactly representable as a double.
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int READ_CHUNK = 8192;
+
+    // Only set when scanning from a Reader; source is then a window over the input
+    // that is refilled in chunks.
+    private final Reader reader;
+    private final StringBuilder window;
+    private final char[] chunk;
+    private boolean inputExhausted = false;
+
+    // Token produced by the last call to scanToken() when pulling tokens one at a time.
+    private Token pending;
+
+    private int start = 0;
+    private int current = 0;
+    private int line = 1;
+    private boolean isAtEnd = false;
+
+    public Scanner(CharSequence source, Diagnostics diagnostics) {
+        this.source = source;
+        this.diagnostics = diagnostics;
+        this.reader = null;
+        this.window = null;
+        this.chunk = null;
+    }
+
+    /**
+     * Scan a source starting part of the way through it, e.g. to rescan the edited
+     * part of a document.
+     * @param offset Index of a character at which no token, string or comment is in
+     *  progress.
+     * @param line Line number at that offset.
+     */
+    Scanner(CharSequence source, Diagnostics diagnostics, int offset, int line) {
+        this(source, diagnostics);
+        this.start = offset;
+        this.current = offset;
+        this.line = line;
+    }
+
+    /**
+     * Scan input as it is read from the reader. Only the characters of the lexeme
+     * being scanned are kept in memory when tokens are pulled with nextToken().
+     */
+    public Scanner(Reader reader, Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        this.window = new StringBuilder();
+        this.source = window;
+        this.reader = reader;
+        this.chunk = new char[READ_CHUNK];
+    }
+
+    /**
+     * Parse the source file for language tokens.
+     * @return List of tokens parsed from the source.
+     */
+    public List<Token> scanTokens() {
+        return scanTokenBuffer().toList();
+    }
+
+    /**
+     * Parse the source file for language tokens without creating a Token object
+     * per token.
+     * @return Buffer of tokens parsed from the source.
+     */
+    public TokenBuffer scanTokenBuffer() {
+        tokens = new TokenBuffer(source);
+        // Keep scanning tokens until we have consumed all characters
+        // from the source string
+        while (!isAtEnd()) {
+            // We are at the beginning of the next lexeme
+            start = current;
+            scanToken();
+        }
+
+        tokens.add(TokenType.EOF, current, 0, line, null);
+        return tokens;
+    }
+
+    /**
+     * Scan the next token into the buffer, or the EOF token once the source is
+     * exhausted.
+     * @return false once the EOF token has been added.
+     */
+    boolean scanNext(TokenBuffer buffer) {
+        tokens = buffer;
+        int size = buffer.size();
+        while (buffer.size() == size) {
+            if (isAtEnd()) {
+                buffer.add(TokenType.EOF, current, 0, line, null);
+                return false;
+            }
+            start = current;
+            scanToken();
+        }
+        return true;
+    }
+
+    /**
+     * @return Offset of the first character that has not been scanned yet.
+     */
+    int position() {
+        return current;
+    }
+
+    /**
+     * Scan just enough of the source to produce the next token. Once the source is
+     * exhausted every further call returns an EOF token.
+     * @return The next token in the source.
+     */
+    public Token nextToken() {
+        pending = null;
+        while (pending == null) {
+            if (isAtEnd()) {
+                return new Token(TokenType.EOF, "", null, line);
+            }
+            // We are at the beginning of the next lexeme
+            start = current;
+            scanToken();
+        }
+        return pending;
+    }
+
+    /**
+     * Scan a single language token from the source.
+     */
+    private void scanToken() {
+        char c = advance();
+        switch (c) {
+            // Single character tokens
+            case '(': addToken(TokenType.LEFT_PAREN); break;
+            case ')': addToken(TokenType.RIGHT_PAREN); break;
+            case '{': addToken(TokenType.LEFT_BRACE); break;
+            case '}': addToken(TokenType.RIGHT_BRACE); break;
+            case ',': addToken(TokenType.COMMA); break;
+            case '.': addToken(TokenType.DOT); break;
+            case '-': addToken(TokenType.MINUS); break;
+            case '+': addToken(TokenType.PLUS); break;
+            case ';': addToken(TokenType.SEMICOLON); break;
+            case '*': addToken(TokenType.STAR); break;
+
+            // One or two character tokens
+            case '!': addToken(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG); break;
+            case '=': addToken(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL); break;
+            case '<': addToken(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS); break;
+            case '>': addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER); break;
+            case '/':
+                if (match('/')) {  // comment, should be ignored
+                    while (peek() != '\n' && !isAtEnd()) {
+                        advance();
+                    }
+                } else {
+                    addToken(TokenType.SLASH);
+                }
+                break;
+
+            // Ignore whitespace.
+            case ' ':
+            case '\r':
+            case '\t':
+                break;
+            case '\n':
+                line++;
+                break;
+            case '"': string(); break;
+
+            default:
+                if (isDigit(c)) {
+                    number();
+                } else if (isAlphaNumeric(c)) {
+                    identifier();
+                } else {
+                    diagnostics.error(line, "Unexpected character.");
+                    break;
+                }
+        }
+    }
+
+    /**
+     * Consume a character from the source and return it.
+     * Advances the current source character index as a side effect.
+     * @return Next character from source.
+     */
+    private char advance() {
+        char next_char = source.charAt(current);
+        current++;
+        return next_char;
+    }
+
+    /**
+     * @return the next character in the source without consuming it.
+     */
+    private char peek() {
+        if (isAtEnd()) return '\0';
+        return source.charAt(current);
+    }
+
+    /**
+     * @return the 2nd character from the current character in source without consuming it.
+     */
+    private char peekNext() {
+        if (!isAvailable(1)) return '\0';
+        return source.charAt(current + 1);
+    }
+
+    /**
+     * Peeks at the next character from the current one and returns whether
+     * the argument matches the next character.
+     * @param expected Character to match with the next character in source.
+     * @return true on matching next character, false otherwise.
+     */
+    private boolean match(char expected) {
+        if (isAtEnd()) {
+            return false;
+        }
+        if (source.charAt(current) != expected) {
+            return false;
+        }
+        current++;
+        return true;
+    }
+
+    /**
+     * Parse the source for a string token and add the token to the running
+     * list of tokens.
+     */
+    private void string() {
+        // Read the string until we peek a " character or reach the end of source
+        while (peek() != '"' && !isAtEnd()) {
+            if (peek() == '\n') {
+                line++;
+            }
+            advance();
+        }
+
+        if (isAtEnd()) {
+            diagnostics.error(line, "Unterminated string.");
+            return;
+        }
+
+        // Consume the closing "
+        advance();
+
+        // Capture the string value inside the quotes
+        String value = source.subSequence(start + 1, current - 1).toString();
+        addToken(TokenType.STRING, value);
+    }
+
+    /**
+     * Parse the source for a number token and add the token to the running
+     * list of tokens. Whole numbers are decoded while their digits are consumed,
+     * only lexemes with a fractional part or too many digits to be exact go
+     * through Double.parseDouble.
+     */
+    private void number() {
+        // The first digit was already consumed by scanToken()
+        long whole = source.charAt(start) - '0';
+        int digits = 1;
+        while (isDigit(peek())) {
+            whole = whole * 10 + (advance() - '0');
+            digits++;
+        }
+
+        boolean fractional = false;
+        // Handle the fractional part
+        if (peek() == '.' && isDigit(peekNext())) {
+            fractional = true;
+            advance();  // Consume the dot
+
+            while (isDigit(peek())) {
+                advance();
+            }
+        }
+
+        double value;
+        if (!fractional && digits <= MAX_EXACT_DIGITS) {
+            value = whole;
+        } else {
+            value = Double.parseDouble(source.subSequence(start, current).toString());
+        }
+        addToken(TokenType.NUMBER, numbers.valueOf(value));
+    }
+
+    /**
+     * Parse the source for an identifier or keyword token. Keywords are recognized
+     * straight from the source without creating a String; identifier names are
+     * interned and kept as the token's literal.
+     */
+    private void identifier() {
+        while (isAlphaNumeric(peek())) advance();
+        TokenType type = keywordType();
+        if (type == TokenType.IDENTIFIER) {
+            addToken(type, symbols.intern(source, start, current));
+        } else {
+            addToken(type);
+        }
+    }
+
+    /**
+     * Branch on the leading characters of the lexeme to find the only keyword it
+     * could be, then compare the rest.
+     * @return The keyword's type, or IDENTIFIER if the lexeme is not a keyword.
+     */
+    private TokenType keywordType() {
+        switch (source.charAt(start)) {
+            case 'a': return checkKeyword(1, "nd", TokenType.AND);
+            case 'c': return checkKeyword(1, "lass", TokenType.CLASS);
+            case 'e': return checkKeyword(1, "lse", TokenType.ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a': return checkKeyword(2, "lse", TokenType.FALSE);
+                        case 'o': return checkKeyword(2, "r", TokenType.FOR);
+                        case 'u': return checkKeyword(2, "n", TokenType.FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(1, "f", TokenType.IF);
+            case 'n': return checkKeyword(1, "il", TokenType.NIL);
+            case 'o': return checkKeyword(1, "r", TokenType.OR);
+            case 'p': return checkKeyword(1, "rint", TokenType.PRINT);
+            case 'r': return checkKeyword(1, "eturn", TokenType.RETURN);
+            case 's': return checkKeyword(1, "uper", TokenType.SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'h': return checkKeyword(2, "is", TokenType.THIS);
+                        case 'r': return checkKeyword(2, "ue", TokenType.TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(1, "ar", TokenType.VAR);
+            case 'w': return checkKeyword(1, "hile", TokenType.WHILE);
+        }
+        return TokenType.IDENTIFIER;
+    }
+
+    /**
+     * @param offset Number of leading characters already matched.
+     * @param rest Remaining characters of the keyword.
+     * @param type Type of the keyword.
+     * @return type if the rest of the lexeme is exactly rest, IDENTIFIER otherwise.
+     */
+    private TokenType checkKeyword(int offset, String rest, TokenType type) {
+        if (current - start != offset + rest.length()) {
+            return TokenType.IDENTIFIER;
+        }
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + offset + i) != rest.charAt(i)) {
+                return TokenType.IDENTIFIER;
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Add a token of given type to the running list of tokens.
+     * @param type Type of the language token.
+     */
+    private void addToken(TokenType type) {
+        addToken(type, null);
+    }
+
+    /**
+     * Add a token of given type and literal to the running list of tokens.
+     * @param type Type of the language token.
+     * @param literal TODO
+     */
+    private void addToken(TokenType type, Object literal) {
+        if (tokens != null) {
+            tokens.add(type, start, current - start, line, literal);
+        } else {
+            String lexeme = type == TokenType.IDENTIFIER
+                    ? (String) literal
+                    : source.subSequence(start, current).toString();
+            pending = new Token(type, lexeme, literal, line);
+        }
+    }
+
+    /**
+     * @return true if current character index has exceeded the length of the source file,
+     *  false otherwise.
+     */
+    private boolean isAtEnd() {
+        return !isAvailable(0);
+    }
+
+    /**
+     * @param lookahead Distance of a character from the current character.
+     * @return true if the source has a character that far ahead, reading more input
+     *  if the scanner is reading from a Reader.
+     */
+    private boolean isAvailable(int lookahead) {
+        // Filling the window may shift current, so it is re-read on every pass.
+        while (current + lookahead >= source.length()) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the next chunk of input into the window. When tokens are pulled one at a
+     * time the characters before the current lexeme are dropped first.
+     * @return false if there is no more input.
+     */
+    private boolean fill() {
+        if (reader == null || inputExhausted) {
+            return false;
+        }
+        if (tokens == null && start > 0) {
+            window.delete(0, start);
+            current -= start;
+            start = 0;
+        }
+
+        try {
+            int read = reader.read(chunk);
+            if (read < 0) {
+                inputExhausted = true;
+                return false;
+            }
+            window.append(chunk, 0, read);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAlpha(char c) {
+        return c >= 'a' && c <= 'z' ||
+                c >= 'A' && c <= 'Z' ||
+                c == '_';
+    }
+
+    private boolean isAlphaNumeric(char c) {
+        return isAlpha(c) || isDigit(c);
+    }
+}
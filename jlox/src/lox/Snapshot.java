@@ -0,0 +1,519 @@
+package lox;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of a parsed expression or a token stream, so a script that has
+ * not changed can be loaded without scanning and parsing it again.
+ *
+ * A snapshot starts with a header: the magic number, the format version, what it
+ * holds, flags, and the length and hash of the source it was made from. A snapshot
+ * whose header does not match the current version and source is stale and is not
+ * loaded. The header ends with a CRC32 of the rest of the snapshot; a snapshot whose
+ * body does not match it is damaged and not loaded either. After the header comes a
+ * pool with each distinct literal value and variable name once, then either the
+ * nodes of the expression's CompactAst in postorder or one record per token,
+ * referring to literals and names by their index in the pool. Numbers that are
+ * usually small are written as variable length integers.
+ */
+public final class Snapshot {
+    // "LOXC"
+    private static final int MAGIC = 0x4c4f5843;
+    // Increment whenever the layout changes.
+    static final int VERSION = 3;
+    // Bytes in the header, which ends with the checksum of what follows.
+    private static final int HEADER_SIZE = 24;
+
+    private static final byte EXPR = 1;
+    private static final byte TOKENS = 2;
+
+    /**
+     * Flag of an expression snapshot made from an optimized tree.
+     */
+    static final int OPTIMIZED = 1;
+
+    private static final byte NIL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte NUMBER = 3;
+    private static final byte STRING = 4;
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final Set<TokenType> BINARY_OPERATORS = EnumSet.of(
+            TokenType.BANG_EQUAL, TokenType.EQUAL_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL,
+            TokenType.LESS, TokenType.LESS_EQUAL, TokenType.MINUS, TokenType.PLUS, TokenType.SLASH, TokenType.STAR);
+    private static final Set<TokenType> UNARY_OPERATORS = EnumSet.of(TokenType.BANG, TokenType.MINUS);
+
+    private Snapshot() {}
+
+    /**
+     * @return Where the snapshot of a script is kept: next to it, with .loxc appended
+     *  to its name.
+     */
+    public static Path pathFor(Path script) {
+        return script.resolveSibling(script.getFileName() + "c");
+    }
+
+    /**
+     * Write a snapshot of an expression parsed from the given source.
+     * @param flags OPTIMIZED if the expression has been optimized, otherwise 0.
+     */
+    public static void writeExpr(Path path, CharSequence source, Expr expr, int flags) throws IOException {
+        writeCompact(path, source, CompactAst.of(expr), flags);
+    }
+
+    /**
+     * Write a snapshot of a compact tree parsed from the given source. It can be
+     * read back with readExpr() as well as readCompact().
+     * @param flags OPTIMIZED if the tree has been optimized, otherwise 0.
+     */
+    static void writeCompact(Path path, CharSequence source, CompactAst ast, int flags) throws IOException {
+        Output out = new Output();
+        writeHeader(out, EXPR, flags, source);
+
+        Pool pool = new Pool();
+        int[] literals = new int[ast.size()];
+        for (int node = 0; node < ast.size(); node++) {
+            if (ast.kind(node) == CompactAst.LITERAL) {
+                literals[node] = pool.indexOf(ast.value(node));
+            } else if (ast.kind(node) == CompactAst.VARIABLE) {
+                literals[node] = pool.indexOf(ast.name(node));
+            }
+        }
+        pool.write(out);
+
+        out.writeVarint(ast.size());
+        for (int node = 0; node < ast.size(); node++) {
+            byte kind = ast.kind(node);
+            out.writeByte(kind);
+            switch (kind) {
+                case CompactAst.BINARY:
+                    out.writeByte(ast.operator(node).ordinal());
+                    out.writeVarint(ast.line(node));
+                    // Distance back to the left operand, small unless the right
+                    // operand is large.
+                    out.writeVarint(node - ast.left(node));
+                    break;
+                case CompactAst.UNARY:
+                    out.writeByte(ast.operator(node).ordinal());
+                    out.writeVarint(ast.line(node));
+                    break;
+                case CompactAst.LITERAL:
+                    out.writeVarint(literals[node]);
+                    break;
+                case CompactAst.VARIABLE:
+                    out.writeVarint(literals[node]);
+                    out.writeVarint(ast.line(node));
+                    break;
+            }
+        }
+        write(path, out);
+    }
+
+    /**
+     * Read the snapshot of an expression parsed from the given source.
+     * @param flags Flags the snapshot must have been written with.
+     * @return The expression, or null if there is no snapshot or it is stale or
+     *  damaged.
+     */
+    public static Expr readExpr(Path path, CharSequence source, int flags) throws IOException {
+        CompactAst ast = readCompact(path, source, flags);
+        return ast == null ? null : ast.toExpr();
+    }
+
+    /**
+     * Read the snapshot of an expression parsed from the given source as the compact
+     * tree it is stored as.
+     * @param flags Flags the snapshot must have been written with.
+     * @return The tree, or null if there is no snapshot or it is stale or damaged.
+     */
+    static CompactAst readCompact(Path path, CharSequence source, int flags) throws IOException {
+        ByteBuffer in = read(path);
+        try {
+            if (in == null || !readHeader(in, EXPR, flags, source)) {
+                return null;
+            }
+            Object[] pool = readPool(in);
+            // Every node takes at least one byte.
+            int size = readCount(in, 1);
+            if (size == 0) {
+                throw new IOException("Corrupt snapshot " + path + ": no nodes");
+            }
+            CompactAst ast = new CompactAst();
+            // Roots of the subtrees read so far and not yet an operand, to check
+            // the nodes form one tree in postorder before it is built.
+            int[] roots = new int[size];
+            int rootCount = 0;
+            for (int node = 0; node < size; node++) {
+                byte kind = in.get();
+                switch (kind) {
+                    case CompactAst.BINARY: {
+                        TokenType operator = readOperator(in, BINARY_OPERATORS);
+                        int line = readVarint(in);
+                        int left = node - readVarint(in);
+                        // The right operand is the node before; the left one is the root before that.
+                        if (rootCount < 2 || roots[rootCount - 2] != left) {
+                            throw new IOException("Corrupt snapshot " + path + ": bad operands for node " + node);
+                        }
+                        rootCount -= 2;
+                        ast.binary(left, operator, line);
+                        break;
+                    }
+                    case CompactAst.UNARY: {
+                        TokenType operator = readOperator(in, UNARY_OPERATORS);
+                        if (rootCount < 1) {
+                            throw new IOException("Corrupt snapshot " + path + ": no operand for node " + node);
+                        }
+                        rootCount--;
+                        ast.unary(operator, readVarint(in));
+                        break;
+                    }
+                    case CompactAst.LITERAL:
+                        ast.literal(readPooled(in, pool));
+                        break;
+                    case CompactAst.GROUPING:
+                        if (rootCount < 1) {
+                            throw new IOException("Corrupt snapshot " + path + ": no operand for node " + node);
+                        }
+                        rootCount--;
+                        ast.grouping();
+                        break;
+                    case CompactAst.VARIABLE: {
+                        Object name = readPooled(in, pool);
+                        if (!(name instanceof String)) {
+                            throw new IOException("Corrupt snapshot " + path + ": variable name is not a string");
+                        }
+                        ast.variable((String) name, readVarint(in));
+                        break;
+                    }
+                    default:
+                        throw new IOException("Corrupt snapshot " + path + ": unknown node kind " + kind);
+                }
+                roots[rootCount++] = node;
+            }
+            if (rootCount != 1) {
+                throw new IOException("Corrupt snapshot " + path + ": " + rootCount + " trees");
+            }
+            return ast;
+        } catch (BufferUnderflowException e) {
+            // Cut short, e.g. by a full disk.
+            return null;
+        }
+    }
+
+    /**
+     * Write a snapshot of the tokens scanned from the given source.
+     */
+    public static void writeTokens(Path path, CharSequence source, TokenBuffer tokens) throws IOException {
+        Output out = new Output();
+        writeHeader(out, TOKENS, 0, source);
+
+        Pool pool = new Pool();
+        int[] literals = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            if (hasLiteral(tokens.type(i))) {
+                literals[i] = pool.indexOf(tokens.literal(i));
+            }
+        }
+        pool.write(out);
+
+        out.writeVarint(tokens.size());
+        int start = 0;
+        int line = 1;
+        for (int i = 0; i < tokens.size(); i++) {
+            out.writeByte(tokens.type(i).ordinal());
+            // Tokens are in source order, so offsets and lines only grow.
+            out.writeVarint(tokens.start(i) - start);
+            out.writeVarint(tokens.length(i));
+            out.writeVarint(tokens.line(i) - line);
+            start = tokens.start(i);
+            line = tokens.line(i);
+            if (hasLiteral(tokens.type(i))) {
+                out.writeVarint(literals[i]);
+            }
+        }
+        write(path, out);
+    }
+
+    /**
+     * Read the snapshot of the tokens scanned from the given source.
+     * @return The tokens, or null if there is no snapshot or it is stale or
+     *  damaged.
+     */
+    public static TokenBuffer readTokens(Path path, CharSequence source) throws IOException {
+        ByteBuffer in = read(path);
+        try {
+            if (in == null || !readHeader(in, TOKENS, 0, source)) {
+                return null;
+            }
+            Object[] pool = readPool(in);
+            // Every token takes at least four bytes.
+            int size = readCount(in, 4);
+            TokenBuffer tokens = new TokenBuffer(source);
+            int start = 0;
+            int line = 1;
+            for (int i = 0; i < size; i++) {
+                TokenType type = readType(in);
+                int offset = readVarint(in);
+                int length = readVarint(in);
+                int lines = readVarint(in);
+                if (offset < 0 || length < 0 || lines < 0 || length > source.length() - start - offset) {
+                    throw new IOException("Corrupt snapshot " + path + ": token " + i + " is out of the source");
+                }
+                start += offset;
+                line += lines;
+                tokens.add(type, start, length, line, hasLiteral(type) ? readPooled(in, pool) : null);
+            }
+            return tokens;
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write to a temporary file that replaces the snapshot once complete, so a
+     * concurrent reader never sees half a snapshot.
+     */
+    private static void write(Path path, Output out) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            out.setInt(HEADER_SIZE - 4, checksum(out.bytes, HEADER_SIZE, out.size));
+            Files.write(temporary, Arrays.copyOf(out.bytes, out.size));
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return The contents of the snapshot, or null if there is none.
+     */
+    private static ByteBuffer read(Path path) throws IOException {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static void writeHeader(Output out, byte content, int flags, CharSequence source) {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION >> 8);
+        out.writeByte(VERSION);
+        out.writeByte(content);
+        out.writeByte(flags);
+        out.writeInt(source.length());
+        out.writeLong(AstCache.hash(source));
+        // Checksum of the body, filled in by write() once it is complete.
+        out.writeInt(0);
+    }
+
+    /**
+     * @return true if the snapshot holds the given content, made by this version
+     *  with the given flags from the given source, and its body is intact.
+     */
+    private static boolean readHeader(ByteBuffer in, byte content, int flags, CharSequence source) {
+        boolean current = in.getInt() == MAGIC
+                && in.getShort() == VERSION
+                && in.get() == content
+                && in.get() == flags
+                && in.getInt() == source.length()
+                && in.getLong() == AstCache.hash(source);
+        // The structure checks while reading only catch damage that breaks the
+        // tree's shape, not e.g. a flipped bit in a number.
+        return current && in.getInt() == checksum(in.array(), HEADER_SIZE, in.limit());
+    }
+
+    private static int checksum(byte[] bytes, int start, int end) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, start, end - start);
+        return (int) crc.getValue();
+    }
+
+    private static boolean hasLiteral(TokenType type) {
+        return type == TokenType.NUMBER || type == TokenType.STRING || type == TokenType.IDENTIFIER;
+    }
+
+    /**
+     * Distinct literal values in the order they were first seen.
+     */
+    private static class Pool {
+        private final Map<Object, Integer> indices = new HashMap<>();
+        private final Output values = new Output();
+
+        int indexOf(Object value) {
+            // HashMap allows a null key, which stands for nil.
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = indices.size();
+                indices.put(value, index);
+                writeValue(values, value);
+            }
+            return index;
+        }
+
+        void write(Output out) {
+            out.writeVarint(indices.size());
+            out.writeBytes(values.bytes, values.size);
+        }
+    }
+
+    private static Object[] readPool(ByteBuffer in) throws IOException {
+        // Every value takes at least one byte.
+        Object[] pool = new Object[readCount(in, 1)];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = readValue(in);
+        }
+        return pool;
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(NIL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(NUMBER);
+            out.writeLong(Double.doubleToRawLongBits((double) value));
+        } else {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeVarint(bytes.length);
+            out.writeBytes(bytes, bytes.length);
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NIL: return null;
+            case FALSE: return false;
+            case TRUE: return true;
+            case NUMBER: return in.getDouble();
+            case STRING: {
+                int length = readVarint(in);
+                if (length < 0 || length > in.remaining()) {
+                    throw new IOException("Corrupt snapshot: string of " + length + " bytes");
+                }
+                String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+                return value;
+            }
+            default: throw new IOException("Corrupt snapshot: unknown value tag " + tag);
+        }
+    }
+
+    /**
+     * Read how many items follow, each taking at least the given number of bytes,
+     * so a corrupt count cannot make the reader allocate more than the file holds.
+     */
+    private static int readCount(ByteBuffer in, int minBytes) throws IOException {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining() / minBytes) {
+            throw new IOException("Corrupt snapshot: count of " + count);
+        }
+        return count;
+    }
+
+    private static TokenType readType(ByteBuffer in) throws IOException {
+        int ordinal = in.get();
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IOException("Corrupt snapshot: unknown token type " + ordinal);
+        }
+        return TYPES[ordinal];
+    }
+
+    private static TokenType readOperator(ByteBuffer in, Set<TokenType> operators) throws IOException {
+        TokenType type = readType(in);
+        if (!operators.contains(type)) {
+            throw new IOException("Corrupt snapshot: " + type + " is not an operator here");
+        }
+        return type;
+    }
+
+    private static Object readPooled(ByteBuffer in, Object[] pool) throws IOException {
+        int index = readVarint(in);
+        if (index < 0 || index >= pool.length) {
+            throw new IOException("Corrupt snapshot: pool index " + index + " of " + pool.length);
+        }
+        return pool[index];
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Growable big-endian byte array. Unlike a DataOutputStream it takes no lock per
+     * byte written.
+     */
+    private static class Output {
+        byte[] bytes = new byte[1024];
+        int size = 0;
+
+        void writeByte(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                writeByte(value >>> shift);
+            }
+        }
+
+        void setInt(int offset, int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[offset++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * Write a non-negative int in groups of 7 bits, low bits first, with the high
+         * bit of each byte set if more follow.
+         */
+        void writeVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeBytes(byte[] values, int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+            }
+            System.arraycopy(values, 0, bytes, size, length);
+            size += length;
+        }
+    }
+}
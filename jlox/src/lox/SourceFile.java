@@ -0,0 +1,91 @@
+package lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads a script by memory-mapping it instead of reading it onto the heap.
+ * Pure ASCII files are scanned straight out of the mapping; a file containing any
+ * other byte is decoded as UTF-8 once.
+ */
+public class SourceFile {
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    private SourceFile() {}
+
+    /**
+     * @param path Path of the script to load.
+     * @return Character view of the script's contents.
+     */
+    public static CharSequence map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (isAscii(bytes)) {
+                return new AsciiSequence(bytes, 0, bytes.limit());
+            }
+            return StandardCharsets.UTF_8.decode(bytes);
+        }
+    }
+
+    /**
+     * Check eight bytes at a time whether any byte has its high bit set.
+     */
+    private static boolean isAscii(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((bytes.getLong(i) & NON_ASCII_MASK) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A range of ASCII bytes viewed as characters without copying them.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(ByteBuffer bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            byte[] copy = new byte[length];
+            bytes.get(offset, copy);
+            return new String(copy, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package lox;
+
+/**
+ * Interns identifier names for one compilation. Names are looked up directly from
+ * a range of the source, so a String is only created the first time a name is seen
+ * and every later occurrence shares it.
+ */
+public class SymbolTable {
+    private String[] symbols = new String[64];
+    private int[] hashes = new int[64];
+    private int size = 0;
+
+    /**
+     * @param source Source containing the name.
+     * @param start Index of the first character of the name.
+     * @param end Index just past the last character of the name.
+     * @return The shared String for the name.
+     */
+    String intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = symbols.length - 1;
+        int slot = hash & mask;
+        while (symbols[slot] != null) {
+            if (hashes[slot] == hash && matches(symbols[slot], source, start, end)) {
+                return symbols[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String symbol = source.subSequence(start, end).toString();
+        symbols[slot] = symbol;
+        hashes[slot] = hash;
+        if (++size * 2 > symbols.length) {
+            grow();
+        }
+        return symbol;
+    }
+
+    /**
+     * @return Number of distinct names interned.
+     */
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        String[] oldSymbols = symbols;
+        int[] oldHashes = hashes;
+        symbols = new String[oldSymbols.length * 2];
+        hashes = new int[oldHashes.length * 2];
+        int mask = symbols.length - 1;
+
+        for (int i = 0; i < oldSymbols.length; i++) {
+            if (oldSymbols[i] == null) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (symbols[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            symbols[slot] = oldSymbols[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static boolean matches(String symbol, CharSequence source, int start, int end) {
+        if (symbol.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < symbol.length(); i++) {
+            if (symbol.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        // Spread the bits, the table is indexed by the low ones.
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,3 +1,5 @@
+package lox;
+
 public class Token {
     final TokenType type;
     final String lexeme;
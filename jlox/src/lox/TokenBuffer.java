@@ -0,0 +1,201 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact token stream stored as parallel primitive arrays. Lexemes are not copied
+ * out of the source; they are only materialized when asked for. Literal values are
+ * kept in a side table since most tokens have none.
+ */
+public class TokenBuffer implements TokenSource {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CharSequence source;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] lines = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Token indices (ascending) that carry a literal, and the literal for each.
+    private int[] literalTokens = new int[16];
+    private Object[] literals = new Object[16];
+    private int literalCount = 0;
+
+    TokenBuffer(CharSequence source) {
+        this.source = source;
+    }
+
+    void add(TokenType type, int start, int length, int line, Object literal) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+
+        if (literal != null) {
+            if (literalCount == literalTokens.length) {
+                literalTokens = Arrays.copyOf(literalTokens, literalCount * 2);
+                literals = Arrays.copyOf(literals, literalCount * 2);
+            }
+            literalTokens[literalCount] = size;
+            literals[literalCount] = literal;
+            literalCount++;
+        }
+        size++;
+    }
+
+    /**
+     * @return Number of tokens in the buffer, including the trailing EOF.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    /**
+     * @return Offset of the first character of the token in the source.
+     */
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    @Override
+    public int line(int index) {
+        return lines[index];
+    }
+
+    @Override
+    public Object literal(int index) {
+        int slot = Arrays.binarySearch(literalTokens, 0, literalCount, index);
+        return slot >= 0 ? literals[slot] : null;
+    }
+
+    /**
+     * @return Index of the token that starts at the given offset, or -1 if no token
+     *  starts there.
+     */
+    int indexAt(int offset) {
+        int index = Arrays.binarySearch(starts, 0, size, offset);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * @return Index of the last token that starts before the given offset, or -1 if
+     *  there is none.
+     */
+    int indexBefore(int offset) {
+        int index = Arrays.binarySearch(starts, 0, size, offset);
+        return (index >= 0 ? index : -index - 1) - 1;
+    }
+
+    /**
+     * Drop every token from the given index on.
+     */
+    void truncate(int newSize) {
+        int count = Arrays.binarySearch(literalTokens, 0, literalCount, newSize);
+        count = count >= 0 ? count : -count - 1;
+        Arrays.fill(literals, count, literalCount, null);
+        literalCount = count;
+        size = newSize;
+    }
+
+    /**
+     * Replace the tokens [from, to) with the tokens of another buffer, moving the
+     * tokens after them by the given number of characters and lines. Used when part
+     * of the source has been edited and rescanned.
+     */
+    void splice(int from, int to, TokenBuffer replacement, int offsetDelta, int lineDelta) {
+        int tail = size - to;
+        int newSize = from + replacement.size + tail;
+        if (newSize > types.length) {
+            int capacity = Math.max(newSize, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        int moved = from + replacement.size;
+        System.arraycopy(types, to, types, moved, tail);
+        System.arraycopy(starts, to, starts, moved, tail);
+        System.arraycopy(lengths, to, lengths, moved, tail);
+        System.arraycopy(lines, to, lines, moved, tail);
+        for (int i = moved; i < newSize; i++) {
+            starts[i] += offsetDelta;
+            lines[i] += lineDelta;
+        }
+        System.arraycopy(replacement.types, 0, types, from, replacement.size);
+        System.arraycopy(replacement.starts, 0, starts, from, replacement.size);
+        System.arraycopy(replacement.lengths, 0, lengths, from, replacement.size);
+        System.arraycopy(replacement.lines, 0, lines, from, replacement.size);
+
+        // Literals before the splice stay, the replacement's come next, and the
+        // ones after the splice move with their tokens.
+        int before = Arrays.binarySearch(literalTokens, 0, literalCount, from);
+        before = before >= 0 ? before : -before - 1;
+        int after = Arrays.binarySearch(literalTokens, 0, literalCount, to);
+        after = after >= 0 ? after : -after - 1;
+        int count = before + replacement.literalCount + literalCount - after;
+        int[] newTokens = Arrays.copyOf(literalTokens, Math.max(count, 16));
+        Object[] newLiterals = Arrays.copyOf(literals, Math.max(count, 16));
+        int next = before;
+        for (int i = 0; i < replacement.literalCount; i++, next++) {
+            newTokens[next] = replacement.literalTokens[i] + from;
+            newLiterals[next] = replacement.literals[i];
+        }
+        for (int i = after; i < literalCount; i++, next++) {
+            newTokens[next] = literalTokens[i] - to + moved;
+            newLiterals[next] = literals[i];
+        }
+        Arrays.fill(newLiterals, next, newLiterals.length, null);
+        literalTokens = newTokens;
+        literals = newLiterals;
+        literalCount = count;
+        size = newSize;
+    }
+
+    /**
+     * Copy the lexeme of a token out of the source. Identifiers return their
+     * interned name instead.
+     */
+    public String lexeme(int index) {
+        if (type(index) == TokenType.IDENTIFIER) {
+            return (String) literal(index);
+        }
+        return source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+    }
+
+    @Override
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index]);
+    }
+
+    /**
+     * @return Every token in the buffer as a separate Token object.
+     */
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+}
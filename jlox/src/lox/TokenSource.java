@@ -0,0 +1,44 @@
+package lox;
+
+import java.util.List;
+
+/**
+ * Random access to a scanned token stream by token index. The parser only asks
+ * for full Token objects when it needs to keep one, e.g. as an operator in the AST.
+ */
+public interface TokenSource {
+    TokenType type(int index);
+
+    Object literal(int index);
+
+    int line(int index);
+
+    Token token(int index);
+
+    /**
+     * Adapt an already materialized list of tokens.
+     */
+    static TokenSource of(List<Token> tokens) {
+        return new TokenSource() {
+            @Override
+            public TokenType type(int index) {
+                return tokens.get(index).type;
+            }
+
+            @Override
+            public Object literal(int index) {
+                return tokens.get(index).literal;
+            }
+
+            @Override
+            public int line(int index) {
+                return tokens.get(index).line;
+            }
+
+            @Override
+            public Token token(int index) {
+                return tokens.get(index);
+            }
+        };
+    }
+}
@@ -1,3 +1,5 @@
+package lox;
+
 public enum TokenType {
     // Single character tokens:
     LEFT_PAREN,  // '('
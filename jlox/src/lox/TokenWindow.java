@@ -0,0 +1,59 @@
+package lox;
+
+/**
+ * Sliding window over the tokens of a scanner that is pulled one token at a time.
+ * Tokens are scanned only when the parser first asks for them, and only the last
+ * few are retained, so memory depends on the parser's lookahead rather than on the
+ * size of the input.
+ */
+public class TokenWindow implements TokenSource {
+    // Must be a power of two.
+    private static final int CAPACITY = 8;
+
+    private final Scanner scanner;
+    private final PipelineStats stats;
+    private final Token[] ring = new Token[CAPACITY];
+    // Number of tokens pulled from the scanner so far.
+    private int scanned = 0;
+
+    public TokenWindow(Scanner scanner) {
+        this(scanner, PipelineStats.NONE);
+    }
+
+    /**
+     * @param stats Counts every token as it is scanned.
+     */
+    TokenWindow(Scanner scanner, PipelineStats stats) {
+        this.scanner = scanner;
+        this.stats = stats;
+    }
+
+    @Override
+    public TokenType type(int index) {
+        return token(index).type;
+    }
+
+    @Override
+    public Object literal(int index) {
+        return token(index).literal;
+    }
+
+    @Override
+    public int line(int index) {
+        return token(index).line;
+    }
+
+    @Override
+    public Token token(int index) {
+        if (index < scanned - CAPACITY) {
+            throw new IllegalStateException("Token " + index + " is no longer buffered.");
+        }
+        while (index >= scanned) {
+            Token token = scanner.nextToken();
+            stats.countToken(token.type);
+            ring[scanned & (CAPACITY - 1)] = token;
+            scanned++;
+        }
+        return ring[index & (CAPACITY - 1)];
+    }
+}
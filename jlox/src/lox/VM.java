@@ -0,0 +1,220 @@
+package lox;
+
+import java.util.Arrays;
+
+/**
+ * Stack machine that runs compiled chunks. Values on the stack are stored untagged
+ * in parallel arrays, so numbers and booleans are never boxed while a chunk runs;
+ * only the final result is. The stack is reused between runs, so one VM should not
+ * be shared between threads.
+ */
+public class VM {
+    private static final byte NIL = 0;
+    private static final byte BOOL = 1;
+    private static final byte NUMBER = 2;
+    private static final byte OBJECT = 3;
+
+    private byte[] tags = new byte[64];
+    // Numbers, and booleans as 0 or 1.
+    private double[] numbers = new double[64];
+    // Strings.
+    private Object[] objects = new Object[64];
+
+    /**
+     * Run a chunk, reporting a runtime error to the given diagnostics.
+     * @return The value of the compiled expression, or null if evaluation failed.
+     */
+    Object interpret(Chunk chunk, Diagnostics diagnostics) {
+        try {
+            return run(chunk);
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    Object run(Chunk chunk) {
+        try {
+            return execute(chunk);
+        } finally {
+            // Don't keep strings from this run alive, whether or not it failed.
+            Arrays.fill(objects, 0, chunk.maxStack, null);
+        }
+    }
+
+    private Object execute(Chunk chunk) {
+        ensureCapacity(chunk.maxStack);
+        byte[] code = chunk.code;
+        byte[] tags = this.tags;
+        double[] numbers = this.numbers;
+        Object[] objects = this.objects;
+        int top = 0;
+        int ip = 0;
+
+        for (;;) {
+            int offset = ip;
+            switch (code[ip++]) {
+                case Chunk.OP_CONSTANT: {
+                    int index = (code[ip] & 0xff) << 8 | code[ip + 1] & 0xff;
+                    ip += 2;
+                    Object constant = chunk.constants[index];
+                    if (constant instanceof Double) {
+                        tags[top] = NUMBER;
+                        numbers[top] = (double) constant;
+                    } else {
+                        tags[top] = OBJECT;
+                        objects[top] = constant;
+                    }
+                    top++;
+                    break;
+                }
+                case Chunk.OP_NIL:
+                    tags[top++] = NIL;
+                    break;
+                case Chunk.OP_TRUE:
+                    tags[top] = BOOL;
+                    numbers[top++] = 1;
+                    break;
+                case Chunk.OP_FALSE:
+                    tags[top] = BOOL;
+                    numbers[top++] = 0;
+                    break;
+                case Chunk.OP_ADD:
+                    top--;
+                    if (tags[top - 1] == NUMBER && tags[top] == NUMBER) {
+                        numbers[top - 1] += numbers[top];
+                    } else if (tags[top - 1] == OBJECT && tags[top] == OBJECT
+                            && objects[top - 1] instanceof CharSequence && objects[top] instanceof CharSequence) {
+                        objects[top - 1] = Rope.concat((CharSequence) objects[top - 1], (CharSequence) objects[top]);
+                    } else {
+                        throw new RuntimeError(chunk.site(offset), "Operands must be two numbers or two strings.");
+                    }
+                    objects[top] = null;
+                    break;
+                case Chunk.OP_SUBTRACT:
+                    top = checkNumbers(chunk, offset, top);
+                    numbers[top - 1] -= numbers[top];
+                    break;
+                case Chunk.OP_MULTIPLY:
+                    top = checkNumbers(chunk, offset, top);
+                    numbers[top - 1] *= numbers[top];
+                    break;
+                case Chunk.OP_DIVIDE:
+                    top = checkNumbers(chunk, offset, top);
+                    numbers[top - 1] /= numbers[top];
+                    break;
+                case Chunk.OP_CHECK_NUMBER:
+                    if (tags[top - 1] != NUMBER) {
+                        throw new RuntimeError(chunk.site(offset), "Operand must be a number.");
+                    }
+                    break;
+                case Chunk.OP_NEGATE:
+                    if (tags[top - 1] != NUMBER) {
+                        throw new RuntimeError(chunk.site(offset), "Operand must be a number.");
+                    }
+                    numbers[top - 1] = -numbers[top - 1];
+                    break;
+                case Chunk.OP_NOT:
+                    setBool(top - 1, !isTruthy(top - 1));
+                    break;
+                case Chunk.OP_EQUAL:
+                    top--;
+                    setBool(top - 1, isEqual(top - 1, top));
+                    objects[top] = null;
+                    break;
+                case Chunk.OP_NOT_EQUAL:
+                    top--;
+                    setBool(top - 1, !isEqual(top - 1, top));
+                    objects[top] = null;
+                    break;
+                case Chunk.OP_GREATER:
+                    top = checkNumbers(chunk, offset, top);
+                    setBool(top - 1, numbers[top - 1] > numbers[top]);
+                    break;
+                case Chunk.OP_GREATER_EQUAL:
+                    top = checkNumbers(chunk, offset, top);
+                    setBool(top - 1, numbers[top - 1] >= numbers[top]);
+                    break;
+                case Chunk.OP_LESS:
+                    top = checkNumbers(chunk, offset, top);
+                    setBool(top - 1, numbers[top - 1] < numbers[top]);
+                    break;
+                case Chunk.OP_LESS_EQUAL:
+                    top = checkNumbers(chunk, offset, top);
+                    setBool(top - 1, numbers[top - 1] <= numbers[top]);
+                    break;
+                case Chunk.OP_GET_VARIABLE: {
+                    int index = (code[ip] & 0xff) << 8 | code[ip + 1] & 0xff;
+                    throw new RuntimeError(chunk.site(offset),
+                            "Undefined variable '" + chunk.constants[index] + "'.");
+                }
+                case Chunk.OP_RETURN:
+                    return box(top - 1);
+            }
+        }
+    }
+
+    /**
+     * Pop the right operand of a numeric binary operator after checking that both
+     * operands are numbers.
+     * @return The new stack top.
+     */
+    private int checkNumbers(Chunk chunk, int offset, int top) {
+        if (tags[top - 2] != NUMBER || tags[top - 1] != NUMBER) {
+            throw new RuntimeError(chunk.site(offset), "Operand must be a number.");
+        }
+        return top - 1;
+    }
+
+    private void setBool(int slot, boolean value) {
+        tags[slot] = BOOL;
+        numbers[slot] = value ? 1 : 0;
+        objects[slot] = null;
+    }
+
+    /**
+     * false and nil are falsey, everything else is truthy.
+     */
+    private boolean isTruthy(int slot) {
+        switch (tags[slot]) {
+            case NIL: return false;
+            case BOOL: return numbers[slot] != 0;
+            default: return true;
+        }
+    }
+
+    /**
+     * Same semantics as the tree-walking interpreter, which compares boxed values
+     * with equals().
+     */
+    private boolean isEqual(int a, int b) {
+        if (tags[a] != tags[b]) {
+            return false;
+        }
+        switch (tags[a]) {
+            case NIL: return true;
+            case BOOL: return numbers[a] == numbers[b];
+            case NUMBER: return Double.doubleToLongBits(numbers[a]) == Double.doubleToLongBits(numbers[b]);
+            // Strings, which may be a String or a Rope.
+            default: return objects[a].toString().equals(objects[b].toString());
+        }
+    }
+
+    private Object box(int slot) {
+        switch (tags[slot]) {
+            case NIL: return null;
+            case BOOL: return numbers[slot] != 0;
+            case NUMBER: return numbers[slot];
+            default: return objects[slot];
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= tags.length) {
+            return;
+        }
+        tags = new byte[size];
+        numbers = new double[size];
+        objects = new Object[size];
+    }
+}
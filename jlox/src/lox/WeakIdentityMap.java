@@ -0,0 +1,113 @@
+package lox;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Map from objects, compared by identity, to values that are kept only while the
+ * object is reachable elsewhere. Lets a walker keep state for the trees it runs,
+ * e.g. their compiled form, without a field on every node; structurally equal trees
+ * parsed from different lines get separate entries. Lookups do not lock. Safe to
+ * share between threads.
+ *
+ * Values must not refer to their key, or the entry is never removed.
+ */
+final class WeakIdentityMap<K, V> {
+    private final ConcurrentHashMap<Key, V> entries = new ConcurrentHashMap<>();
+    // Keys whose object was collected, to remove on the next insertion.
+    private final ReferenceQueue<K> collected = new ReferenceQueue<>();
+
+    /**
+     * @return The value of the key, or null if it has none.
+     */
+    V get(K key) {
+        return entries.get(new Lookup(key));
+    }
+
+    /**
+     * @return The value of the key, created with create() if it has none. Racing
+     *  callers get the same value.
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> create) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        expunge();
+        return entries.computeIfAbsent(new WeakKey<>(key, collected), entry -> create.apply(key));
+    }
+
+    private void expunge() {
+        for (Reference<? extends K> key; (key = collected.poll()) != null; ) {
+            entries.remove((Key) key);
+        }
+    }
+
+    /**
+     * Equal to another key holding the same object.
+     */
+    private interface Key {
+        Object referent();
+    }
+
+    private static boolean same(Key key, Object other) {
+        if (key == other) {
+            return true;
+        }
+        Object referent = key.referent();
+        return referent != null && other instanceof Key && referent == ((Key) other).referent();
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> implements Key {
+        private final int hash;
+
+        WeakKey(K key, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = System.identityHashCode(key);
+        }
+
+        @Override
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return same(this, other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Key to look up an entry with, without creating a reference.
+     */
+    private static final class Lookup implements Key {
+        private final Object key;
+
+        Lookup(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object referent() {
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return same(this, other);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(key);
+        }
+    }
+}
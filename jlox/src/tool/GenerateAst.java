@@ -2,22 +2,28 @@ package tool;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class GenerateAst {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.out.println("Usage: generateAst <output_directory>");
+        if (args.length != 1 && !(args.length == 3 && args[1].equals("--walker"))) {
+            System.out.println("Usage: generateAst <output_directory> [--walker <class_name>]");
             System.exit(64);
         }
         String outputDir = args[0];
-        defineAst(outputDir, "Expr", Arrays.asList(
+        List<String> types = Arrays.asList(
                 "Binary   : Expr left, Token operator, Expr right",
                 "Grouping : Expr expression",
                 "Literal  : Object value",
-                "Unary    : Token operator, Expr right"
-        ));
+                "Unary    : Token operator, Expr right",
+                "Variable : Token name"
+        );
+        defineAst(outputDir, "Expr", types);
+        if (args.length == 3) {
+            defineWalker(outputDir, args[2], "Expr", types);
+        }
     }
 
     private static void defineAst(String outputDir, String fileBaseName, List<String> types)
@@ -27,57 +33,240 @@ public class GenerateAst {
         System.out.println("Writing to: " + path);
 
         try (PrintWriter writer = new PrintWriter(path, "UTF-8")) {
-            writer.println("abstract class " + fileBaseName + " {");
+            writer.println("package lox;");
+            writer.println();
+            writer.println("import java.util.ArrayList;");
+            writer.println("import java.util.List;");
+            writer.println("import java.util.Objects;");
+            writer.println();
+            writer.println("public abstract class " + fileBaseName + " {");
+
+            // One tag per node type, so walkers can switch on it.
+            for (int i = 0; i < types.size(); i++) {
+                writer.println("    static final int " + typeName(types.get(i)).toUpperCase() + " = " + i + ";");
+            }
+            writer.println();
             defineVisitor(writer, fileBaseName, types);
 
+            writer.println();
+            writer.println("    final int kind;");
+            writer.println();
+            writer.println("    " + fileBaseName + "(int kind) {");
+            writer.println("        this.kind = kind;");
+            writer.println("    }");
+
             // The base accept() method.
             writer.println();
-            writer.println("  abstract <R> R accept(Visitor<R> visitor);");
+            writer.println("    abstract <R> R accept(Visitor<R> visitor);");
+
+            defineEquality(writer, fileBaseName);
 
-            for (String exprType : types) {
-                String typeName = exprType.split(":")[0].trim();
-                String fields = exprType.split(":")[1].trim();
-                defineType(writer, fileBaseName, typeName, fields);
+            for (String type : types) {
+                String fields = type.split(":")[1].trim();
+                defineType(writer, fileBaseName, typeName(type), fields);
             }
 
             writer.println("}");
         }
     }
 
+    private static String typeName(String type) {
+        return type.split(":")[0].trim();
+    }
+
+    /**
+     * Structural equals() and hashCode() in the base class. They work through
+     * pending subtrees on an explicit stack instead of recursing, so they handle
+     * trees of any depth. Each node type only compares its own fields.
+     */
+    private static void defineEquality(PrintWriter writer, String baseName) {
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Trees are equal if they have the same shape, operators and literal values,");
+        writer.println("     * whichever lines they were parsed from. Subtrees still to compare are kept on");
+        writer.println("     * an explicit stack, so deep trees cannot overflow the call stack.");
+        writer.println("     */");
+        writer.println("    @Override");
+        writer.println("    public final boolean equals(Object object) {");
+        writer.println("        if (!(object instanceof " + baseName + ")) {");
+        writer.println("            return false;");
+        writer.println("        }");
+        writer.println("        List<" + baseName + "> pending = new ArrayList<>();");
+        writer.println("        pending.add(this);");
+        writer.println("        pending.add((" + baseName + ") object);");
+        writer.println("        while (!pending.isEmpty()) {");
+        writer.println("            " + baseName + " b = pending.remove(pending.size() - 1);");
+        writer.println("            " + baseName + " a = pending.remove(pending.size() - 1);");
+        writer.println("            if (a != b && (a.kind != b.kind || !a.fieldsEqual(b, pending))) {");
+        writer.println("                return false;");
+        writer.println("            }");
+        writer.println("        }");
+        writer.println("        return true;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    public final int hashCode() {");
+        writer.println("        int hash = 1;");
+        writer.println("        List<" + baseName + "> pending = new ArrayList<>();");
+        writer.println("        pending.add(this);");
+        writer.println("        while (!pending.isEmpty()) {");
+        writer.println("            hash = 31 * hash + pending.remove(pending.size() - 1).fieldsHash(pending);");
+        writer.println("        }");
+        writer.println("        return hash;");
+        writer.println("    }");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Compare the fields of a node of the same kind, adding pairs of subtrees to");
+        writer.println("     * pending instead of comparing them.");
+        writer.println("     */");
+        writer.println("    abstract boolean fieldsEqual(" + baseName + " other, List<" + baseName + "> pending);");
+        writer.println();
+        writer.println("    /**");
+        writer.println("     * Hash the kind and fields of a node, adding subtrees to pending instead of");
+        writer.println("     * hashing them.");
+        writer.println("     */");
+        writer.println("    abstract int fieldsHash(List<" + baseName + "> pending);");
+        writer.println();
+        writer.println("    // Tokens match by type and text; their lines do not matter.");
+        writer.println("    static boolean sameToken(Token a, Token b) {");
+        writer.println("        return a.type == b.type && Objects.equals(a.lexeme, b.lexeme);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    static int tokenHash(Token token) {");
+        writer.println("        return 31 * token.type.ordinal() + Objects.hashCode(token.lexeme);");
+        writer.println("    }");
+    }
+
     private static void defineType(PrintWriter writer, String baseName, String exprTypeName, String fields) {
-        writer.println("public static class " + exprTypeName + " extends " + baseName + " {");
+        String[] fieldList = fields.split(", ");
+        writer.println();
+        writer.println("    public static final class " + exprTypeName + " extends " + baseName + " {");
         // individual fields
-        for (String field : fields.split(", ")) {
-            writer.println("final " + field + ";");
+        for (String field : fieldList) {
+            writer.println("        final " + field + ";");
         }
         // constructor
-        writer.println(exprTypeName + "(" + fields + ") {");
-        for (String field : fields.split(", ")) {
-            String fieldType = field.split(" ")[0];
+        writer.println();
+        writer.println("        " + exprTypeName + "(" + fields + ") {");
+        writer.println("            super(" + exprTypeName.toUpperCase() + ");");
+        for (String field : fieldList) {
             String fieldName = field.split(" ")[1];
-            writer.println("this." + fieldName + " = " + fieldName + ";");
+            writer.println("            this." + fieldName + " = " + fieldName + ";");
         }
-        writer.println("}");
+        writer.println("        }");
 
         // visitor pattern
         writer.println();
-        writer.println("    @Override");
-        writer.println("    <R> R accept(Visitor<R> visitor) {");
-        writer.println("      return visitor.visit" + exprTypeName + baseName + "(this);");
-        writer.println("    }");
+        writer.println("        @Override");
+        writer.println("        <R> R accept(Visitor<R> visitor) {");
+        writer.println("            return visitor.visit" + exprTypeName + baseName + "(this);");
+        writer.println("        }");
+
+        // structural equality: subtrees are deferred to the caller's stack
+        StringBuilder equal = new StringBuilder();
+        List<String> hashTerms = new ArrayList<>();
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        boolean fieldsEqual(" + baseName + " other, List<" + baseName + "> pending) {");
+        writer.println("            " + exprTypeName + " that = (" + exprTypeName + ") other;");
+        for (String field : fieldList) {
+            String fieldType = field.split(" ")[0];
+            String fieldName = field.split(" ")[1];
+            if (fieldType.equals(baseName)) {
+                writer.println("            pending.add(" + fieldName + ");");
+                writer.println("            pending.add(that." + fieldName + ");");
+                continue;
+            }
+            if (equal.length() > 0) {
+                equal.append(" && ");
+            }
+            if (fieldType.equals("Token")) {
+                equal.append("sameToken(").append(fieldName).append(", that.").append(fieldName).append(")");
+                hashTerms.add("tokenHash(" + fieldName + ")");
+            } else {
+                equal.append("Objects.equals(").append(fieldName).append(", that.").append(fieldName).append(")");
+                hashTerms.add("Objects.hashCode(" + fieldName + ")");
+            }
+        }
+        writer.println("            return " + (equal.length() > 0 ? equal : "true") + ";");
+        writer.println("        }");
+
+        writer.println();
+        writer.println("        @Override");
+        writer.println("        int fieldsHash(List<" + baseName + "> pending) {");
+        for (String field : fieldList) {
+            if (field.split(" ")[0].equals(baseName)) {
+                writer.println("            pending.add(" + field.split(" ")[1] + ");");
+            }
+        }
+        writer.println("            return " + combineHash(exprTypeName.toUpperCase(), hashTerms) + ";");
+        writer.println("        }");
 
         // closing brace
-        writer.println("}");
+        writer.println("    }");
+    }
+
+    /**
+     * @return Java expression combining the kind tag with each field's hash term in
+     *  turn, e.g. 31 * (31 * KIND + a) + b.
+     */
+    private static String combineHash(String kind, List<String> terms) {
+        String hash = kind;
+        boolean first = true;
+        for (String term : terms) {
+            hash = "31 * " + (first ? hash : "(" + hash + ")") + " + " + term;
+            first = false;
+        }
+        return hash;
     }
 
     private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
-        writer.println("  interface Visitor<R> {");
+        writer.println("    interface Visitor<R> {");
 
         for (String type : types) {
-            String typeName = type.split(":")[0].trim();
-            writer.println("    R visit" + typeName + baseName + "(" + typeName + " " + baseName.toLowerCase() + ");");
+            String typeName = typeName(type);
+            writer.println("        R visit" + typeName + baseName + "(" + typeName + " " + baseName.toLowerCase() + ");");
         }
 
-        writer.println("  }");
+        writer.println("    }");
+    }
+
+    /**
+     * Write the skeleton of a walker that dispatches on the kind tag with a switch
+     * instead of going through accept(), to be filled in by hand.
+     */
+    private static void defineWalker(String outputDir, String className, String baseName, List<String> types)
+        throws IOException {
+
+        String path = outputDir + "/" + className + ".java";
+        System.out.println("Writing to: " + path);
+
+        try (PrintWriter writer = new PrintWriter(path, "UTF-8")) {
+            writer.println("package lox;");
+            writer.println();
+            writer.println("class " + className + " {");
+            writer.println("    Object walk(" + baseName + " " + baseName.toLowerCase() + ") {");
+            writer.println("        switch (" + baseName.toLowerCase() + ".kind) {");
+            for (String type : types) {
+                String typeName = typeName(type);
+                String variable = typeName.toLowerCase();
+                writer.println("            case " + baseName + "." + typeName.toUpperCase() + ": {");
+                writer.println("                " + baseName + "." + typeName + " " + variable + " = ("
+                        + baseName + "." + typeName + ") " + baseName.toLowerCase() + ";");
+                for (String field : type.split(":")[1].trim().split(", ")) {
+                    if (field.split(" ")[0].equals(baseName)) {
+                        writer.println("                walk(" + variable + "." + field.split(" ")[1] + ");");
+                    }
+                }
+                writer.println("                return null;");
+                writer.println("            }");
+            }
+            writer.println("            default:");
+            writer.println("                throw new IllegalArgumentException(\"Unknown " + baseName.toLowerCase()
+                    + " kind: \" + " + baseName.toLowerCase() + ".kind);");
+            writer.println("        }");
+            writer.println("    }");
+            writer.println("}");
+        }
     }
 }